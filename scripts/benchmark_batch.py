@@ -0,0 +1,80 @@
+#!/usr/bin/env python3
+"""
+并行批量调用加速比基准测试
+以不同的 parallelism 调用 CPU 密集型入口函数，统计耗时和相对单分区的加速比。
+
+    python scripts/benchmark_batch.py --items 256 --work 200000 --parallelism 1 2 4 8 16 32
+"""
+
+import argparse
+import sys
+import time
+
+try:
+    import requests
+except ImportError as e:
+    print(f"❌ 缺少依赖库: {e}")
+    print("请安装依赖: pip install -r requirements.txt")
+    sys.exit(1)
+
+SCRIPT = """
+function work(n) {
+    var s = 0;
+    for (var i = 0; i < n; i++) {
+        s = (s + i * i) % 1000003;
+    }
+    return s;
+}
+function sum(values) {
+    var total = 0;
+    for (var i = 0; i < values.length; i++) total += values[i];
+    return total;
+}
+"""
+
+
+def run_batch(session, url, items, work, parallelism):
+    payload = {
+        "script": SCRIPT,
+        "language": "js",
+        "entryFunction": "work",
+        "reduceFunction": "sum",
+        "parallelism": parallelism,
+        "argsList": [[work]] * items,
+        "permissions": {"maxExecutionTime": 600000},
+    }
+    start = time.perf_counter()
+    response = session.post(f"{url}/api/script/batch", json=payload, timeout=900)
+    elapsed = time.perf_counter() - start
+    body = response.json()
+    if response.status_code != 200 or not body.get("success"):
+        raise RuntimeError(f"parallelism={parallelism}: HTTP {response.status_code} {body.get('error')}")
+    return elapsed, body["result"]
+
+
+def main():
+    parser = argparse.ArgumentParser(description="并行批量调用加速比基准测试")
+    parser.add_argument("--url", default="http://localhost:8080", help="服务地址")
+    parser.add_argument("--items", type=int, default=256, help="参数组数")
+    parser.add_argument("--work", type=int, default=200000, help="每次调用的循环次数")
+    parser.add_argument("--parallelism", type=int, nargs="+", default=[1, 2, 4, 8], help="要测试的分区数")
+    parser.add_argument("--warmup", type=int, default=2, help="每个分区数的预热次数")
+    args = parser.parse_args()
+
+    session = requests.Session()
+    baseline = None
+    print(f"{'分区数':>6} {'实际分区':>8} {'耗时(s)':>10} {'加速比':>8}")
+    for parallelism in args.parallelism:
+        try:
+            for _ in range(args.warmup):
+                run_batch(session, args.url, args.items, args.work, parallelism)
+            elapsed, result = run_batch(session, args.url, args.items, args.work, parallelism)
+        except (requests.RequestException, RuntimeError) as e:
+            print(f"❌ {e}")
+            sys.exit(1)
+        baseline = baseline or elapsed
+        print(f"{parallelism:>6} {result['partitions']:>8} {elapsed:>10.2f} {baseline / elapsed:>8.2f}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,110 @@
+#!/usr/bin/env python3
+"""
+sleep 密集型脚本吞吐量基准测试
+并发提交调用 time.sleep / setTimeout 的脚本，统计吞吐量、延迟分位数和被拒绝的请求数。
+
+对比平台线程池与虚拟线程模式时，分别以两种配置启动服务后各运行一次：
+    java -Dscript.scheduler.virtual-threads=false -jar target/quarkus-app/quarkus-run.jar
+    java -Dscript.scheduler.virtual-threads=true  -jar target/quarkus-app/quarkus-run.jar
+    python scripts/benchmark_sleep.py --requests 200 --concurrency 64
+"""
+
+import argparse
+import statistics
+import sys
+import time
+from concurrent.futures import ThreadPoolExecutor, as_completed
+
+try:
+    import requests
+except ImportError as e:
+    print(f"❌ 缺少依赖库: {e}")
+    print("请安装依赖: pip install -r requirements.txt")
+    sys.exit(1)
+
+SCRIPTS = {
+    "python": "import time\ntime.sleep({seconds})\n'done'",
+    "js": "new Promise(resolve => setTimeout(() => resolve('done'), {millis}))",
+}
+
+
+def build_request(language, sleep_seconds):
+    template = SCRIPTS[language]
+    script = template.format(seconds=sleep_seconds, millis=int(sleep_seconds * 1000))
+    return {
+        "script": script,
+        "language": language,
+        "permissions": {"maxExecutionTime": 60000},
+    }
+
+
+def run_one(session, url, payload):
+    start = time.perf_counter()
+    try:
+        response = session.post(f"{url}/api/script/execute", json=payload, timeout=120)
+        status = response.status_code
+        success = status == 200 and response.json().get("success", False)
+    except requests.RequestException:
+        status, success = None, False
+    return status, success, time.perf_counter() - start
+
+
+def percentile(values, pct):
+    if not values:
+        return 0.0
+    values = sorted(values)
+    index = min(len(values) - 1, int(round(pct / 100 * (len(values) - 1))))
+    return values[index]
+
+
+def main():
+    parser = argparse.ArgumentParser(description="sleep 密集型脚本吞吐量基准测试")
+    parser.add_argument("--url", default="http://localhost:8080", help="服务地址")
+    parser.add_argument("--language", choices=sorted(SCRIPTS), default="python", help="脚本语言")
+    parser.add_argument("--sleep", type=float, default=1.0, help="每个脚本的 sleep 秒数")
+    parser.add_argument("--requests", type=int, default=100, help="请求总数")
+    parser.add_argument("--concurrency", type=int, default=32, help="客户端并发数")
+    args = parser.parse_args()
+
+    session = requests.Session()
+    adapter = requests.adapters.HTTPAdapter(pool_maxsize=args.concurrency)
+    session.mount("http://", adapter)
+    session.mount("https://", adapter)
+
+    try:
+        mode = session.get(f"{args.url}/api/script/stats", timeout=10).json().get("scheduler", {}).get("mode", "unknown")
+    except (requests.RequestException, ValueError):
+        print(f"❌ 无法连接服务: {args.url}")
+        sys.exit(1)
+
+    # 预热：让上下文池和 Source 缓存就绪，不计入结果
+    run_one(session, args.url, build_request(args.language, 0))
+
+    payload = build_request(args.language, args.sleep)
+    latencies, rejected, failed = [], 0, 0
+    started = time.perf_counter()
+    with ThreadPoolExecutor(max_workers=args.concurrency) as pool:
+        futures = [pool.submit(run_one, session, args.url, payload) for _ in range(args.requests)]
+        for future in as_completed(futures):
+            status, success, elapsed = future.result()
+            if status == 429:
+                rejected += 1
+            elif success:
+                latencies.append(elapsed)
+            else:
+                failed += 1
+    wall = time.perf_counter() - started
+
+    print(f"调度模式:   {mode}")
+    print(f"脚本:       {args.language}, sleep {args.sleep}s, {args.requests} 个请求, 并发 {args.concurrency}")
+    print(f"总耗时:     {wall:.2f}s")
+    print(f"吞吐量:     {len(latencies) / wall:.2f} 次/秒")
+    print(f"成功/拒绝/失败: {len(latencies)}/{rejected}/{failed}")
+    if latencies:
+        print(f"延迟 p50/p95/p99: {percentile(latencies, 50):.2f}s / "
+              f"{percentile(latencies, 95):.2f}s / {percentile(latencies, 99):.2f}s "
+              f"(平均 {statistics.mean(latencies):.2f}s)")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,87 @@
+package cn.lihongjie.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * CBOR 请求和响应的读写
+ *
+ * 使用与 JSON 相同的 ObjectMapper 配置，请求和响应对应相同的模型；
+ * 参数中的字节串（byte string）在 JS 中为 Uint8Array，其他语言为 0-255 的整数数组。
+ */
+@Provider
+@Consumes(CborMessageBodyHandler.APPLICATION_CBOR)
+@Produces(CborMessageBodyHandler.APPLICATION_CBOR)
+public class CborMessageBodyHandler implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    @Inject
+    public CborMessageBodyHandler(ObjectMapper objectMapper) {
+        ObjectMapper mapper = objectMapper.copyWith(new CBORFactory());
+        // 请求体和响应体的流由框架关闭
+        this.reader = mapper.reader().without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * 客户端是否优先接受 CBOR 响应（Accept 中 CBOR 排在 JSON 和通配类型之前）
+     */
+    public static boolean prefersCbor(Iterable<MediaType> acceptableMediaTypes) {
+        for (MediaType type : acceptableMediaTypes) {
+            if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return false;
+            }
+            if (type.isCompatible(APPLICATION_CBOR_TYPE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return true;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        return reader.forType(reader.getTypeFactory().constructType(genericType != null ? genericType : type))
+                .readValue(entityStream);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return true;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        writer.writeValue(entityStream, value);
+    }
+}
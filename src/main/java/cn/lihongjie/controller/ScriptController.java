@@ -1,13 +1,34 @@
 package cn.lihongjie.controller;
 
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.JobState;
+import cn.lihongjie.model.ScriptBatchRequest;
 import cn.lihongjie.model.ScriptExecutionRequest;
 import cn.lihongjie.model.ScriptExecutionResult;
 import cn.lihongjie.model.ScriptPermissions;
+import cn.lihongjie.model.ScriptStreamEvent;
+import cn.lihongjie.service.ScriptExecutionRejectedException;
 import cn.lihongjie.service.ScriptExecutionService;
+import cn.lihongjie.service.ScriptJob;
+import cn.lihongjie.service.ScriptNotFoundException;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.MultiEmitter;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 @Path("/api/script")
 @Produces(MediaType.APPLICATION_JSON)
@@ -19,30 +40,171 @@ public class ScriptController {
     
     /**
      * 执行脚本
+     *
+     * 脚本在专用执行线程池上运行，线程池饱和时返回 429；
+     * 请求和响应可以使用 CBOR（Content-Type/Accept: application/cbor）
      */
     @POST
     @Path("/execute")
-    public Response executeScript(ScriptExecutionRequest request) {
+    @Consumes({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    @Produces({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    public CompletionStage<Response> executeScript(ScriptExecutionRequest request, @Context HttpHeaders headers) {
+        // 解析已注册脚本并验证语言是否支持
+        Response unsupported = validateRequest(request, !CborMessageBodyHandler.prefersCbor(headers.getAcceptableMediaTypes()));
+        if (unsupported != null) {
+            return CompletableFuture.completedFuture(unsupported);
+        }
+        
+        return scriptExecutionService.executeScriptAsync(request, null)
+                .handle(this::toResponse);
+    }
+    
+    /**
+     * 流式执行脚本（Server-Sent Events）：依次推送 start、output（每段输出）和 result 事件，
+     * 执行线程池饱和时推送 busy 事件；客户端断开连接时取消执行
+     */
+    @POST
+    @Path("/execute/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ScriptStreamEvent> executeScriptSse(ScriptExecutionRequest request) {
+        return streamExecution(request);
+    }
+    
+    /**
+     * 流式执行脚本（NDJSON，每行一个事件），事件与 SSE 相同
+     */
+    @POST
+    @Path("/execute/stream")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ScriptStreamEvent> executeScriptNdjson(ScriptExecutionRequest request) {
+        return streamExecution(request);
+    }
+    
+    /**
+     * 批量调用：脚本只执行一次，然后对 argsList 中的每组参数调用入口函数，
+     * 结果的 result 为每次调用的结果、错误和耗时
+     */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    @Produces({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    public CompletionStage<Response> executeBatch(ScriptBatchRequest request, @Context HttpHeaders headers) {
+        Response unsupported = validateRequest(request, !CborMessageBodyHandler.prefersCbor(headers.getAcceptableMediaTypes()));
+        if (unsupported != null) {
+            return CompletableFuture.completedFuture(unsupported);
+        }
+        
         try {
-            // 验证语言是否支持
-            if (!scriptExecutionService.isLanguageAvailable(request.getLanguage())) {
-                String[] availableLanguages = scriptExecutionService.getAvailableLanguages();
-                String errorMsg = String.format("语言 '%s' 不支持。可用语言: %s", 
-                    request.getLanguage(), String.join(", ", availableLanguages));
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(ScriptExecutionResult.error(errorMsg, "", 0))
-                        .build();
-            }
-            
-            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
-            return Response.ok(result).build();
-        } catch (Exception e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+            return scriptExecutionService.executeBatchAsync(request)
+                    .handle(this::toResponse);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(ScriptExecutionResult.error(e.getMessage(), "", 0))
+                    .build());
+        }
+    }
+    
+    /**
+     * 提交异步作业，立即返回 202 和执行ID，不占用连接等待执行结束
+     */
+    @POST
+    @Path("/jobs")
+    @Consumes({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    @Produces({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    public Response submitJob(ScriptExecutionRequest request) {
+        Response unsupported = validateRequest(request, true);
+        if (unsupported != null) {
+            return unsupported;
+        }
+        
+        try {
+            ScriptJob job = scriptExecutionService.submitJob(request);
+            return Response.accepted(job.toStatus())
+                    .location(UriBuilder.fromPath("/api/script/jobs/{executionId}").build(job.getExecutionId()))
+                    .build();
+        } catch (ScriptExecutionRejectedException e) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", 1)
+                    .entity(ScriptExecutionResult.failure(ExecutionStatus.REJECTED, e.getMessage(), "", 0))
+                    .build();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
                     .entity(ScriptExecutionResult.error(e.getMessage(), "", 0))
                     .build();
         }
     }
     
+    /**
+     * 查询异步作业状态
+     */
+    @GET
+    @Path("/jobs/{executionId}")
+    public Response getJobStatus(@PathParam("executionId") String executionId) {
+        ScriptJob job = scriptExecutionService.getJob(executionId);
+        if (job == null) {
+            return jobNotFound(executionId);
+        }
+        return Response.ok(job.toStatus()).build();
+    }
+    
+    /**
+     * 获取异步作业从 offset 开始的增量输出，下次轮询使用返回的 nextOffset
+     */
+    @GET
+    @Path("/jobs/{executionId}/output")
+    public Response getJobOutput(@PathParam("executionId") String executionId,
+                                 @QueryParam("offset") @DefaultValue("0") long offset) {
+        ScriptJob job = scriptExecutionService.getJob(executionId);
+        if (job == null) {
+            return jobNotFound(executionId);
+        }
+        return Response.ok(job.readOutput(offset)).build();
+    }
+    
+    /**
+     * 获取异步作业的执行结果，未结束时返回 202 和作业状态
+     */
+    @GET
+    @Path("/jobs/{executionId}/result")
+    @Produces({MediaType.APPLICATION_JSON, CborMessageBodyHandler.APPLICATION_CBOR})
+    public Response getJobResult(@PathParam("executionId") String executionId) {
+        ScriptJob job = scriptExecutionService.getJob(executionId);
+        if (job == null) {
+            return jobNotFound(executionId);
+        }
+        if (job.getState() != JobState.FINISHED) {
+            return Response.accepted(job.toStatus()).build();
+        }
+        return Response.ok(job.getResult()).build();
+    }
+    
+    /**
+     * 正在运行的执行列表
+     */
+    @GET
+    @Path("/executions")
+    public Response getRunningExecutions() {
+        return Response.ok(scriptExecutionService.getRunningExecutions()).build();
+    }
+    
+    /**
+     * 取消执行，正在运行的脚本会被中断，排队中的执行不再运行
+     */
+    @DELETE
+    @Path("/executions/{executionId}")
+    public Response cancelExecution(@PathParam("executionId") String executionId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("executionId", executionId);
+        if (!scriptExecutionService.cancel(executionId)) {
+            body.put("error", "Execution not found");
+            return Response.status(Response.Status.NOT_FOUND).entity(body).build();
+        }
+        body.put("status", "CANCELLING");
+        return Response.accepted(body).build();
+    }
+    
     /**
      * 获取默认的沙盒权限配置
      */
@@ -72,6 +234,15 @@ public class ScriptController {
         return Response.ok("{\"status\":\"UP\",\"service\":\"script-execution\"}").build();
     }
     
+    /**
+     * 运行时统计信息（上下文池等）
+     */
+    @GET
+    @Path("/stats")
+    public Response getRuntimeStats() {
+        return Response.ok(scriptExecutionService.getRuntimeStats()).build();
+    }
+    
     /**
      * 获取支持的脚本语言
      */
@@ -81,4 +252,106 @@ public class ScriptController {
         String[] languages = scriptExecutionService.getAvailableLanguages();
         return Response.ok(languages).build();
     }
+    
+    /**
+     * 获取支持的脚本语言详细信息（版本、MIME类型、别名）
+     */
+    @GET
+    @Path("/languages/details")
+    public Response getLanguageDetails() {
+        return Response.ok(scriptExecutionService.getLanguageDetails()).build();
+    }
+    
+    /**
+     * 解析请求中的已注册脚本（不存在时返回 404），并验证语言是否支持（不支持时返回 400）；
+     * 结果只用于写出响应，响应为 JSON 时由执行线程直接写为 JSON 文本
+     *
+     * @param rawJsonResult 响应是否为 JSON；作业结果可能以任一格式读取，按 JSON 写出
+     */
+    private Response validateRequest(ScriptExecutionRequest request, boolean rawJsonResult) {
+        request.setRawJsonResult(rawJsonResult);
+        try {
+            scriptExecutionService.resolveScript(request);
+        } catch (ScriptNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(ScriptExecutionResult.error(e.getMessage(), "", 0))
+                    .build();
+        }
+        if (scriptExecutionService.isLanguageAvailable(request.getLanguage())) {
+            return null;
+        }
+        String[] availableLanguages = scriptExecutionService.getAvailableLanguages();
+        String errorMsg = String.format("语言 '%s' 不支持。可用语言: %s", 
+            request.getLanguage(), String.join(", ", availableLanguages));
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(ScriptExecutionResult.error(errorMsg, "", 0))
+                .build();
+    }
+    
+    /**
+     * 执行脚本并以事件流推送输出和结果，输出不在内存中累积
+     */
+    private Multi<ScriptStreamEvent> streamExecution(ScriptExecutionRequest request) {
+        Response unsupported = validateRequest(request, true);
+        if (unsupported != null) {
+            throw new WebApplicationException(unsupported);
+        }
+        if (request.getExecutionId() == null || request.getExecutionId().isBlank()) {
+            request.setExecutionId(UUID.randomUUID().toString());
+        }
+        String executionId = request.getExecutionId();
+        
+        return Multi.createFrom().emitter((MultiEmitter<? super ScriptStreamEvent> emitter) -> {
+            emitter.emit(ScriptStreamEvent.start(executionId));
+            CompletableFuture<ScriptExecutionResult> future = scriptExecutionService.executeScriptAsync(request,
+                    output -> emitter.emit(ScriptStreamEvent.output(executionId, output)));
+            
+            // 客户端断开连接时取消仍在运行的执行
+            emitter.onTermination(() -> {
+                if (!future.isDone()) {
+                    scriptExecutionService.cancel(executionId);
+                }
+            });
+            
+            future.whenComplete((result, throwable) -> {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                if (cause instanceof ScriptExecutionRejectedException) {
+                    emitter.emit(ScriptStreamEvent.busy(executionId, cause.getMessage()));
+                } else if (cause != null) {
+                    emitter.emit(ScriptStreamEvent.error(executionId, cause.getMessage()));
+                } else {
+                    emitter.emit(ScriptStreamEvent.result(executionId, result));
+                }
+                emitter.complete();
+            });
+        });
+    }
+    
+    /**
+     * 将异步执行的结果转换为响应，执行线程池饱和时返回 429
+     */
+    private Response toResponse(ScriptExecutionResult result, Throwable throwable) {
+        if (throwable == null) {
+            return Response.ok(result).build();
+        }
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+        if (cause instanceof ScriptExecutionRejectedException) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", 1)
+                    .entity(ScriptExecutionResult.failure(ExecutionStatus.REJECTED, cause.getMessage(), "", 0))
+                    .build();
+        }
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(ScriptExecutionResult.error(cause.getMessage(), "", 0))
+                .build();
+    }
+    
+    private Response jobNotFound(String executionId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("executionId", executionId);
+        body.put("error", "Job not found");
+        return Response.status(Response.Status.NOT_FOUND).entity(body).build();
+    }
 }
@@ -0,0 +1,131 @@
+package cn.lihongjie.controller;
+
+import cn.lihongjie.model.ScriptDefinition;
+import cn.lihongjie.service.ScriptExecutionService;
+import cn.lihongjie.service.ScriptRegistry;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 脚本注册表：按名称和版本管理脚本，执行时通过 scriptId（和可选的 scriptVersion）引用
+ */
+@Path("/api/script/scripts")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ScriptRegistryController {
+    
+    @Inject
+    ScriptExecutionService scriptExecutionService;
+    
+    @Inject
+    ScriptRegistry registry;
+    
+    /**
+     * 所有脚本的最新版本（不含脚本内容）
+     */
+    @GET
+    public Response listScripts() {
+        return Response.ok(registry.list()).build();
+    }
+    
+    /**
+     * 注册新脚本，名称已存在时返回 409（更新请使用 PUT）
+     */
+    @POST
+    public Response createScript(ScriptDefinition definition) {
+        if (definition.getName() != null && registry.contains(definition.getName())) {
+            return error(Response.Status.CONFLICT, "Script '" + definition.getName() + "' already exists");
+        }
+        return register(definition);
+    }
+    
+    /**
+     * 注册脚本的新版本，脚本不存在时创建
+     */
+    @PUT
+    @Path("/{name}")
+    public Response updateScript(@PathParam("name") String name, ScriptDefinition definition) {
+        definition.setName(name);
+        return register(definition);
+    }
+    
+    /**
+     * 脚本的所有版本（不含脚本内容）
+     */
+    @GET
+    @Path("/{name}")
+    public Response getVersions(@PathParam("name") String name) {
+        List<ScriptDefinition> versions = registry.versions(name);
+        if (versions.isEmpty()) {
+            return notFound(name, null);
+        }
+        return Response.ok(versions).build();
+    }
+    
+    /**
+     * 指定版本的脚本（含脚本内容）
+     */
+    @GET
+    @Path("/{name}/{version}")
+    public Response getScript(@PathParam("name") String name, @PathParam("version") int version) {
+        ScriptDefinition definition = scriptExecutionService.getRegisteredScript(name, version);
+        if (definition == null) {
+            return notFound(name, version);
+        }
+        return Response.ok(definition).build();
+    }
+    
+    /**
+     * 删除脚本的所有版本
+     */
+    @DELETE
+    @Path("/{name}")
+    public Response deleteScript(@PathParam("name") String name) {
+        if (!registry.remove(name)) {
+            return notFound(name, null);
+        }
+        return Response.noContent().build();
+    }
+    
+    /**
+     * 删除脚本的指定版本
+     */
+    @DELETE
+    @Path("/{name}/{version}")
+    public Response deleteVersion(@PathParam("name") String name, @PathParam("version") int version) {
+        if (!registry.remove(name, version)) {
+            return notFound(name, version);
+        }
+        return Response.noContent().build();
+    }
+    
+    private Response register(ScriptDefinition definition) {
+        try {
+            ScriptDefinition registered = scriptExecutionService.registerScript(definition);
+            return Response.created(UriBuilder.fromPath("/api/script/scripts/{name}/{version}")
+                            .build(registered.getName(), registered.getVersion()))
+                    .entity(registered.withoutScript())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return error(Response.Status.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    private Response notFound(String name, Integer version) {
+        return error(Response.Status.NOT_FOUND,
+                "Script '" + name + "'" + (version != null ? " version " + version : "") + " not found");
+    }
+    
+    private Response error(Response.Status status, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        return Response.status(status).entity(body).build();
+    }
+}
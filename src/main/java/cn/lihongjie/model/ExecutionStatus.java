@@ -0,0 +1,15 @@
+package cn.lihongjie.model;
+
+/**
+ * 脚本执行状态
+ */
+public enum ExecutionStatus {
+    SUCCESS, // 执行成功
+    ERROR, // 脚本错误或执行失败
+    TIMEOUT, // 超过最大执行时间被终止
+    MEMORY_LIMIT, // 超过内存分配预算被终止
+    STATEMENT_LIMIT, // 超过最大执行语句数被终止
+    CPU_TIME_LIMIT, // 超过最大CPU时间被终止
+    REJECTED, // 执行线程池饱和，未执行即被拒绝
+    CANCELLED // 被客户端取消
+}
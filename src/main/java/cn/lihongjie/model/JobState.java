@@ -0,0 +1,10 @@
+package cn.lihongjie.model;
+
+/**
+ * 异步作业状态
+ */
+public enum JobState {
+    QUEUED, // 排队等待执行
+    RUNNING, // 正在执行
+    FINISHED // 执行结束，可获取结果
+}
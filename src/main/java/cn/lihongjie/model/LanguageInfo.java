@@ -0,0 +1,87 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LanguageInfo {
+
+    private String id; // 语言ID，如 js、python
+    private String name; // 语言名称
+    private String implementationName; // 实现名称，如 GraalVM.js
+    private String version; // 语言版本
+    private String defaultMimeType; // 默认MIME类型
+    private List<String> mimeTypes; // 支持的MIME类型
+    private List<String> aliases; // 可接受的别名，如 javascript
+
+    public LanguageInfo() {}
+
+    public LanguageInfo(String id, String name, String implementationName, String version,
+                        String defaultMimeType, List<String> mimeTypes, List<String> aliases) {
+        this.id = id;
+        this.name = name;
+        this.implementationName = implementationName;
+        this.version = version;
+        this.defaultMimeType = defaultMimeType;
+        this.mimeTypes = mimeTypes;
+        this.aliases = aliases;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getImplementationName() {
+        return implementationName;
+    }
+
+    public void setImplementationName(String implementationName) {
+        this.implementationName = implementationName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getDefaultMimeType() {
+        return defaultMimeType;
+    }
+
+    public void setDefaultMimeType(String defaultMimeType) {
+        this.defaultMimeType = defaultMimeType;
+    }
+
+    public List<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public void setMimeTypes(List<String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    public void setAliases(List<String> aliases) {
+        this.aliases = aliases;
+    }
+}
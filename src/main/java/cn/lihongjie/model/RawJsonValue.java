@@ -0,0 +1,52 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * 已序列化的 JSON 结果，序列化为 JSON 时原样写出，不再经过 Java 对象；
+ * 序列化为其他格式（如 CBOR）时逐个 token 转写
+ */
+public class RawJsonValue extends JsonSerializable.Base {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String json; // JSON 文本
+
+    public RawJsonValue(String json) {
+        this.json = json;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        if (generator instanceof JsonGeneratorImpl) {
+            generator.writeRawValue(json);
+            return;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+}
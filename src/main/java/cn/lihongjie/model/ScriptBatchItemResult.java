@@ -0,0 +1,72 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptBatchItemResult {
+
+    private int index; // 参数组在 argsList 中的位置
+    private boolean success;
+    private Object result;
+    private String error;
+    private long executionTimeMicros; // 本次调用耗时（微秒）
+
+    public ScriptBatchItemResult() {}
+
+    public ScriptBatchItemResult(int index, boolean success, Object result, String error, long executionTimeMicros) {
+        this.index = index;
+        this.success = success;
+        this.result = result;
+        this.error = error;
+        this.executionTimeMicros = executionTimeMicros;
+    }
+
+    public static ScriptBatchItemResult success(int index, Object result, long executionTimeMicros) {
+        return new ScriptBatchItemResult(index, true, result, null, executionTimeMicros);
+    }
+
+    public static ScriptBatchItemResult error(int index, String error, long executionTimeMicros) {
+        return new ScriptBatchItemResult(index, false, null, error, executionTimeMicros);
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public void setResult(Object result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getExecutionTimeMicros() {
+        return executionTimeMicros;
+    }
+
+    public void setExecutionTimeMicros(long executionTimeMicros) {
+        this.executionTimeMicros = executionTimeMicros;
+    }
+}
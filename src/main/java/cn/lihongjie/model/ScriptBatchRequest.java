@@ -0,0 +1,59 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * 批量调用请求：脚本只执行一次，然后对每组参数调用入口函数（args 字段不使用）
+ *
+ * parallelism 大于1时参数组切分到多个上下文并行调用；指定 reduceFunction 时以所有成功结果的数组调用一次归约函数。
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptBatchRequest extends ScriptExecutionRequest {
+    
+    private List<Object[]> argsList; // 每次调用入口函数的参数
+    private boolean stopOnError; // 某次调用失败后是否跳过剩余调用
+    private int parallelism; // 并行分区数，0或1表示在单个上下文中顺序调用
+    private String reduceFunction; // 归约函数名称，参数为所有成功结果组成的数组
+    
+    public ScriptBatchRequest() {}
+    
+    public ScriptBatchRequest(String script, String language, String entryFunction, ScriptPermissions permissions, List<Object[]> argsList) {
+        super(script, language, entryFunction, permissions, null);
+        this.argsList = argsList;
+    }
+    
+    // Getters and Setters
+    public List<Object[]> getArgsList() {
+        return argsList;
+    }
+    
+    public void setArgsList(List<Object[]> argsList) {
+        this.argsList = argsList;
+    }
+    
+    public boolean isStopOnError() {
+        return stopOnError;
+    }
+    
+    public void setStopOnError(boolean stopOnError) {
+        this.stopOnError = stopOnError;
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    public String getReduceFunction() {
+        return reduceFunction;
+    }
+    
+    public void setReduceFunction(String reduceFunction) {
+        this.reduceFunction = reduceFunction;
+    }
+}
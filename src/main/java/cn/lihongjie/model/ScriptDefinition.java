@@ -0,0 +1,116 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 已注册的脚本
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptDefinition {
+
+    private String name; // 脚本名称，即执行时的 scriptId
+    private int version; // 版本号，从1开始递增
+    private String language = "js"; // 脚本语言
+    private String script; // 脚本内容
+    private String entryFunction; // 默认入口函数，执行请求未指定时使用
+    private String description; // 说明
+    private String hash; // 语言和脚本内容的 SHA-256
+    private long createdAt; // 注册时间（毫秒时间戳）
+    private boolean cacheable; // 是否为纯函数，执行结果可以缓存；执行请求未指定 cacheable 时使用
+
+    public ScriptDefinition() {}
+
+    public ScriptDefinition(String name, int version, String language, String script, String entryFunction,
+                            String description, String hash, long createdAt) {
+        this.name = name;
+        this.version = version;
+        this.language = language;
+        this.script = script;
+        this.entryFunction = entryFunction;
+        this.description = description;
+        this.hash = hash;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * 不含脚本内容的副本，用于列表
+     */
+    public ScriptDefinition withoutScript() {
+        ScriptDefinition copy = new ScriptDefinition(name, version, language, null, entryFunction, description, hash, createdAt);
+        copy.setCacheable(cacheable);
+        return copy;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public void setScript(String script) {
+        this.script = script;
+    }
+
+    public String getEntryFunction() {
+        return entryFunction;
+    }
+
+    public void setEntryFunction(String entryFunction) {
+        this.entryFunction = entryFunction;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+}
@@ -1,6 +1,9 @@
 package cn.lihongjie.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ScriptExecutionRequest {
@@ -9,7 +12,14 @@ public class ScriptExecutionRequest {
     private String language = "js"; // 默认JavaScript
     private String entryFunction; // 入口函数名称
     private ScriptPermissions permissions; // 脚本权限配置
-    private Object[] args; // 传递给入口函数的参数
+    @JsonDeserialize(contentAs = JsonNode.class)
+    private Object[] args; // 传递给入口函数的参数；从 JSON 解析时保留为 JsonNode，脚本读取时才转换
+    private String executionId; // 执行ID，用于取消执行；不指定时由服务生成
+    private String scriptId; // 已注册脚本的名称，指定时不需要 script 和 language
+    private Integer scriptVersion; // 已注册脚本的版本，不指定时使用最新版本
+    private Boolean cacheable; // 结果是否可缓存（脚本为纯函数），不指定时使用已注册脚本的设置
+    @JsonIgnore
+    private boolean rawJsonResult; // 结果直接写为 JSON 文本（由 REST/WebSocket 接口设置）
     
     public ScriptExecutionRequest() {}
     
@@ -61,4 +71,44 @@ public class ScriptExecutionRequest {
     public void setArgs(Object[] args) {
         this.args = args;
     }
+    
+    public String getExecutionId() {
+        return executionId;
+    }
+    
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+    
+    public String getScriptId() {
+        return scriptId;
+    }
+    
+    public void setScriptId(String scriptId) {
+        this.scriptId = scriptId;
+    }
+    
+    public Integer getScriptVersion() {
+        return scriptVersion;
+    }
+    
+    public void setScriptVersion(Integer scriptVersion) {
+        this.scriptVersion = scriptVersion;
+    }
+    
+    public Boolean getCacheable() {
+        return cacheable;
+    }
+    
+    public void setCacheable(Boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+    
+    public boolean isRawJsonResult() {
+        return rawJsonResult;
+    }
+    
+    public void setRawJsonResult(boolean rawJsonResult) {
+        this.rawJsonResult = rawJsonResult;
+    }
 }
@@ -2,15 +2,22 @@ package cn.lihongjie.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.List;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ScriptExecutionResult {
     
+    private String executionId; // 执行ID
     private boolean success;
+    private ExecutionStatus status; // 执行状态
     private Object result;
     private String error;
     private String output; // 脚本输出日志
     private long executionTime; // 执行时间（毫秒）
     private long memoryUsed; // 内存使用量（字节）
+    private long cpuTime; // CPU时间（毫秒）
+    private boolean cached; // 是否复用了结果缓存或进行中的相同执行的结果（本次请求未执行脚本）
+    private List<String> unenforcedLimits; // 请求设置了但本次执行无法强制的预算（如虚拟线程上的 maxCpuTime、maxAllocatedBytes），全部生效时为 null
     
     public ScriptExecutionResult() {}
     
@@ -24,14 +31,30 @@ public class ScriptExecutionResult {
     }
     
     public static ScriptExecutionResult success(Object result, String output, long executionTime, long memoryUsed) {
-        return new ScriptExecutionResult(true, result, null, output, executionTime, memoryUsed);
+        ScriptExecutionResult executionResult = new ScriptExecutionResult(true, result, null, output, executionTime, memoryUsed);
+        executionResult.setStatus(ExecutionStatus.SUCCESS);
+        return executionResult;
     }
     
     public static ScriptExecutionResult error(String error, String output, long executionTime) {
-        return new ScriptExecutionResult(false, null, error, output, executionTime, 0);
+        return failure(ExecutionStatus.ERROR, error, output, executionTime);
+    }
+    
+    public static ScriptExecutionResult failure(ExecutionStatus status, String error, String output, long executionTime) {
+        ScriptExecutionResult executionResult = new ScriptExecutionResult(false, null, error, output, executionTime, 0);
+        executionResult.setStatus(status);
+        return executionResult;
     }
     
     // Getters and Setters
+    public String getExecutionId() {
+        return executionId;
+    }
+    
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+    
     public boolean isSuccess() {
         return success;
     }
@@ -40,6 +63,14 @@ public class ScriptExecutionResult {
         this.success = success;
     }
     
+    public ExecutionStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(ExecutionStatus status) {
+        this.status = status;
+    }
+    
     public Object getResult() {
         return result;
     }
@@ -79,4 +110,28 @@ public class ScriptExecutionResult {
     public void setMemoryUsed(long memoryUsed) {
         this.memoryUsed = memoryUsed;
     }
+    
+    public long getCpuTime() {
+        return cpuTime;
+    }
+    
+    public void setCpuTime(long cpuTime) {
+        this.cpuTime = cpuTime;
+    }
+    
+    public boolean isCached() {
+        return cached;
+    }
+    
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+    
+    public List<String> getUnenforcedLimits() {
+        return unenforcedLimits;
+    }
+    
+    public void setUnenforcedLimits(List<String> unenforcedLimits) {
+        this.unenforcedLimits = unenforcedLimits;
+    }
 }
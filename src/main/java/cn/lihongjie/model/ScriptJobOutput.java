@@ -0,0 +1,75 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptJobOutput {
+
+    private String executionId; // 执行ID
+    private JobState state; // 作业状态
+    private long offset; // 本次输出的起始位置（字符数）
+    private long nextOffset; // 下次轮询使用的起始位置
+    private String output; // 从 offset 开始的输出
+    private boolean truncated; // 输出超过上限，之后的输出已丢弃
+
+    public ScriptJobOutput() {}
+
+    public ScriptJobOutput(String executionId, JobState state, long offset, long nextOffset,
+                           String output, boolean truncated) {
+        this.executionId = executionId;
+        this.state = state;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.output = output;
+        this.truncated = truncated;
+    }
+
+    // Getters and Setters
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public JobState getState() {
+        return state;
+    }
+
+    public void setState(JobState state) {
+        this.state = state;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public void setNextOffset(long nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
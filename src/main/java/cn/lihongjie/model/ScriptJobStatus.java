@@ -0,0 +1,95 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptJobStatus {
+
+    private String executionId; // 执行ID
+    private JobState state; // 作业状态
+    private ExecutionStatus resultStatus; // 执行结果状态，结束前为空
+    private long submittedAt; // 提交时间（毫秒时间戳）
+    private long startedAt; // 开始执行时间，未开始时为0
+    private long finishedAt; // 结束时间，未结束时为0
+    private long outputSize; // 已产生的输出长度（字符数）
+    private boolean outputTruncated; // 输出超过上限后不再保存
+
+    public ScriptJobStatus() {}
+
+    public ScriptJobStatus(String executionId, JobState state, ExecutionStatus resultStatus, long submittedAt,
+                           long startedAt, long finishedAt, long outputSize, boolean outputTruncated) {
+        this.executionId = executionId;
+        this.state = state;
+        this.resultStatus = resultStatus;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.outputSize = outputSize;
+        this.outputTruncated = outputTruncated;
+    }
+
+    // Getters and Setters
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public JobState getState() {
+        return state;
+    }
+
+    public void setState(JobState state) {
+        this.state = state;
+    }
+
+    public ExecutionStatus getResultStatus() {
+        return resultStatus;
+    }
+
+    public void setResultStatus(ExecutionStatus resultStatus) {
+        this.resultStatus = resultStatus;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(long submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public long getOutputSize() {
+        return outputSize;
+    }
+
+    public void setOutputSize(long outputSize) {
+        this.outputSize = outputSize;
+    }
+
+    public boolean isOutputTruncated() {
+        return outputTruncated;
+    }
+
+    public void setOutputTruncated(boolean outputTruncated) {
+        this.outputTruncated = outputTruncated;
+    }
+}
@@ -0,0 +1,59 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * 指定归约函数的批量调用结果
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptMapReduceResult {
+
+    private Object reduced; // 归约函数的返回值
+    private int items; // 调用入口函数的次数
+    private int partitions; // 并行分区数
+    private List<ScriptBatchItemResult> failures; // 失败的调用，其结果不参与归约
+
+    public ScriptMapReduceResult() {}
+
+    public ScriptMapReduceResult(Object reduced, int items, int partitions, List<ScriptBatchItemResult> failures) {
+        this.reduced = reduced;
+        this.items = items;
+        this.partitions = partitions;
+        this.failures = failures;
+    }
+
+    // Getters and Setters
+    public Object getReduced() {
+        return reduced;
+    }
+
+    public void setReduced(Object reduced) {
+        this.reduced = reduced;
+    }
+
+    public int getItems() {
+        return items;
+    }
+
+    public void setItems(int items) {
+        this.items = items;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public List<ScriptBatchItemResult> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<ScriptBatchItemResult> failures) {
+        this.failures = failures;
+    }
+}
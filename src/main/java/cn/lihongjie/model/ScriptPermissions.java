@@ -5,6 +5,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ScriptPermissions {
     
+    private static final long SANDBOX_MAX_ALLOCATED_BYTES = 1024L * 1024 * 1024;
+    private static final long PERMISSIVE_MAX_ALLOCATED_BYTES = 4L * 1024 * 1024 * 1024;
+    
     private boolean allowIO = false; // 是否允许IO操作
     private boolean allowNetwork = false; // 是否允许网络访问
     private boolean allowHostAccess = false; // 是否允许主机访问
@@ -12,7 +15,10 @@ public class ScriptPermissions {
     private boolean allowCreateThread = false; // 是否允许创建线程
     private boolean allowEnvironmentAccess = false; // 是否允许环境变量访问
     private long maxExecutionTime = 30000; // 最大执行时间（毫秒）
-    private long maxMemoryUsage = 128 * 1024 * 1024; // 最大内存使用（字节）
+    private long maxMemoryUsage = 128 * 1024 * 1024; // 已废弃：存活内存无法按执行统计，此项不生效，请使用 maxAllocatedBytes
+    private long maxStatements = 0; // 最大执行语句数，0表示不限制（目前仅 JavaScript 支持）
+    private long maxCpuTime = 0; // 最大CPU时间（毫秒），0表示不限制
+    private long maxAllocatedBytes = SANDBOX_MAX_ALLOCATED_BYTES; // 执行线程最多累计分配的字节数（不小于存活内存），0表示不限制
     
     public ScriptPermissions() {}
     
@@ -36,7 +42,9 @@ public class ScriptPermissions {
     
     // 创建宽松的配置
     public static ScriptPermissions createPermissive() {
-        return new ScriptPermissions(true, true, true, true, true, true, 60000, 512 * 1024 * 1024);
+        ScriptPermissions permissions = new ScriptPermissions(true, true, true, true, true, true, 60000, 512 * 1024 * 1024);
+        permissions.setMaxAllocatedBytes(PERMISSIVE_MAX_ALLOCATED_BYTES);
+        return permissions;
     }
     
     // Getters and Setters
@@ -96,11 +104,43 @@ public class ScriptPermissions {
         this.maxExecutionTime = maxExecutionTime;
     }
     
+    /**
+     * @deprecated 不生效，内存预算由 {@link #getMaxAllocatedBytes()} 限制
+     */
+    @Deprecated
     public long getMaxMemoryUsage() {
         return maxMemoryUsage;
     }
     
+    /**
+     * @deprecated 不生效，请使用 {@link #setMaxAllocatedBytes(long)}
+     */
+    @Deprecated
     public void setMaxMemoryUsage(long maxMemoryUsage) {
         this.maxMemoryUsage = maxMemoryUsage;
     }
+    
+    public long getMaxStatements() {
+        return maxStatements;
+    }
+    
+    public void setMaxStatements(long maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+    
+    public long getMaxCpuTime() {
+        return maxCpuTime;
+    }
+    
+    public void setMaxCpuTime(long maxCpuTime) {
+        this.maxCpuTime = maxCpuTime;
+    }
+    
+    public long getMaxAllocatedBytes() {
+        return maxAllocatedBytes;
+    }
+    
+    public void setMaxAllocatedBytes(long maxAllocatedBytes) {
+        this.maxAllocatedBytes = maxAllocatedBytes;
+    }
 }
@@ -0,0 +1,97 @@
+package cn.lihongjie.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 流式执行事件（SSE / NDJSON 的每个元素）
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScriptStreamEvent {
+
+    private String type; // 事件类型：start、output、result、busy、error
+    private String executionId; // 执行ID
+    private String output; // output 事件的输出片段
+    private ScriptExecutionResult result; // result 事件的执行结果（output 字段只含未单独推送的尾部输出）
+    private String error; // busy、error 事件的错误信息
+    private long timestamp;
+
+    public ScriptStreamEvent() {}
+
+    public ScriptStreamEvent(String type, String executionId, String output, ScriptExecutionResult result, String error) {
+        this.type = type;
+        this.executionId = executionId;
+        this.output = output;
+        this.result = result;
+        this.error = error;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static ScriptStreamEvent start(String executionId) {
+        return new ScriptStreamEvent("start", executionId, null, null, null);
+    }
+
+    public static ScriptStreamEvent output(String executionId, String output) {
+        return new ScriptStreamEvent("output", executionId, output, null, null);
+    }
+
+    public static ScriptStreamEvent result(String executionId, ScriptExecutionResult result) {
+        return new ScriptStreamEvent("result", executionId, null, result, null);
+    }
+
+    public static ScriptStreamEvent busy(String executionId, String error) {
+        return new ScriptStreamEvent("busy", executionId, null, null, error);
+    }
+
+    public static ScriptStreamEvent error(String executionId, String error) {
+        return new ScriptStreamEvent("error", executionId, null, null, error);
+    }
+
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public ScriptExecutionResult getResult() {
+        return result;
+    }
+
+    public void setResult(ScriptExecutionResult result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,84 @@
+package cn.lihongjie.service;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+/**
+ * 池化上下文的内置对象完整性检查
+ *
+ * 创建上下文时记录内置对象的快照，归还时与快照比较：JS 比较从全局对象可达的所有对象的原型、
+ * 可扩展性和属性描述符。快照只保存在检查函数的闭包中，脚本无法访问或修改；
+ * 只按对象身份比较，不调用脚本可以重写的方法。检查脚本以内部源码执行，不计入语句数限制。
+ *
+ * Python 的模块、类和容器对脚本完全可见，在解释器内部进行的检查可以被脚本找到并绕过，
+ * 因此不支持检查，Python 上下文不进入上下文池。
+ */
+final class ContextIntegrity {
+
+    private static final Source JS_CHECK = Source.newBuilder("js", """
+            (function () {
+              'use strict';
+              const ownKeys = Reflect.ownKeys, describe = Reflect.getOwnPropertyDescriptor,
+                    prototypeOf = Reflect.getPrototypeOf, isExtensible = Reflect.isExtensible, same = Object.is;
+              const exec = RegExp.prototype.exec, apply = Reflect.apply, emptyPattern = /(?:)/;
+              const flags = d => (d.writable ? 1 : 0) | (d.enumerable ? 2 : 0) | (d.configurable ? 4 : 0);
+              const objects = [], states = [];
+              // 先检查 Object.prototype，后续读取属性描述符时不会经过被修改的原型
+              const queue = [Object.prototype, Function.prototype, globalThis];
+              const seen = new Set();
+              for (let q = 0; q < queue.length; q++) {
+                const object = queue[q];
+                if (seen.has(object)) continue;
+                seen.add(object);
+                const state = [prototypeOf(object), isExtensible(object)];
+                if (state[0] !== null) queue.push(state[0]);
+                for (const key of ownKeys(object)) {
+                  const d = describe(object, key);
+                  state.push(key, flags(d), d.value, d.get, d.set);
+                  for (const child of [d.value, d.get, d.set]) {
+                    if ((typeof child === 'object' && child !== null) || typeof child === 'function') queue.push(child);
+                  }
+                }
+                objects.push(object);
+                states.push(state);
+              }
+              return function verify() {
+                // 清除 RegExp.$1、RegExp.input 等保存上次匹配的静态属性
+                apply(exec, emptyPattern, ['']);
+                for (let i = 0; i < objects.length; i++) {
+                  const object = objects[i], state = states[i];
+                  if (!same(prototypeOf(object), state[0]) || isExtensible(object) !== state[1]) return false;
+                  const keys = ownKeys(object);
+                  if (keys.length * 5 + 2 !== state.length) return false;
+                  for (let k = 0, s = 2; k < keys.length; k++, s += 5) {
+                    if (keys[k] !== state[s]) return false;
+                    const d = describe(object, keys[k]);
+                    if (flags(d) !== state[s + 1] || !same(d.value, state[s + 2])
+                        || d.get !== state[s + 3] || d.set !== state[s + 4]) return false;
+                  }
+                }
+                return true;
+              };
+            })()
+            """, "context-integrity.js").internal(true).buildLiteral();
+
+    private ContextIntegrity() {
+    }
+
+    /**
+     * 语言是否支持完整性检查（不支持的语言的上下文不能安全复用）
+     */
+    static boolean isSupported(String language) {
+        return "js".equals(language);
+    }
+
+    /**
+     * 记录上下文当前的内置对象快照
+     *
+     * @return 无参的检查函数，返回 true 表示内置对象与快照一致；不支持的语言返回 null
+     */
+    static Value capture(Context context, String language) {
+        return isSupported(language) ? context.eval(JS_CHECK) : null;
+    }
+}
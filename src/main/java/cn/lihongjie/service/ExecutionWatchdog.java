@@ -0,0 +1,226 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.ScriptPermissions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Context;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 脚本执行看门狗
+ *
+ * 周期性检查所有正在运行的执行，超过时间、内存分配或CPU时间预算时中断上下文（{@link Context#interrupt}），
+ * 中断在宽限时间内未生效则强制关闭上下文（{@code close(true)}）。
+ * 中断操作会阻塞，因此在独立线程上进行，不影响其他执行的检查。
+ *
+ * 执行按执行ID登记，客户端可通过 {@link #cancel} 取消：已在运行的执行立即中断，
+ * 仍在排队的执行在开始运行时直接终止。
+ */
+@ApplicationScoped
+public class ExecutionWatchdog {
+
+    private static final Logger LOG = Logger.getLogger(ExecutionWatchdog.class);
+
+    @ConfigProperty(name = "script.watchdog.interval", defaultValue = "50ms")
+    Duration interval;
+
+    @ConfigProperty(name = "script.watchdog.interrupt-grace", defaultValue = "1s")
+    Duration interruptGrace;
+
+    private final Map<String, RunningExecution> executions = new ConcurrentHashMap<>();
+    private final Set<String> pending = new HashSet<>();
+    private final Set<String> cancelledPending = new HashSet<>();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong memoryLimitExceeded = new AtomicLong();
+    private final AtomicLong cpuTimeLimitExceeded = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong forcedTerminations = new AtomicLong();
+    private final AtomicLong unenforcedBudgets = new AtomicLong();
+    private ScheduledExecutorService ticker;
+    private ExecutorService terminator;
+
+    @PostConstruct
+    void init() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "script-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        terminator = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "script-terminator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        ticker.scheduleAtFixedRate(this::check, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        terminator.shutdownNow();
+    }
+
+    /**
+     * 受理执行ID，从此刻起（包括排队期间）即可取消
+     *
+     * @return 执行ID未被其他执行占用时返回 true
+     */
+    public synchronized boolean accept(String executionId) {
+        if (executions.containsKey(executionId) || pending.contains(executionId)) {
+            return false;
+        }
+        pending.add(executionId);
+        return true;
+    }
+
+    /**
+     * 释放已受理但未登记（如排队超时）或已结束的执行ID
+     */
+    public synchronized void forget(String executionId) {
+        pending.remove(executionId);
+        cancelledPending.remove(executionId);
+    }
+
+    /**
+     * 登记一次执行，由执行线程在借出上下文后调用；排队期间已被取消的执行登记后立即处于终止状态
+     *
+     * @param startTime 执行开始时间（毫秒时间戳），截止时间从此刻起算
+     * @param permissions 执行的资源预算（最大执行时间、内存分配量和CPU时间）
+     */
+    public synchronized RunningExecution register(String executionId, Context context, long startTime, ScriptPermissions permissions) {
+        RunningExecution execution = new RunningExecution(executionId, context, Thread.currentThread(), startTime, permissions);
+        pending.remove(executionId);
+        executions.put(executionId, execution);
+        if (!execution.getUnenforcedLimits().isEmpty()) {
+            unenforcedBudgets.incrementAndGet();
+        }
+        if (cancelledPending.remove(executionId)) {
+            terminate(execution, ExecutionStatus.CANCELLED, "Script execution was cancelled");
+        }
+        return execution;
+    }
+
+    /**
+     * 注销执行
+     *
+     * @return 执行是否未被终止；被终止的上下文不能再复用
+     */
+    public boolean complete(RunningExecution execution) {
+        executions.remove(execution.getId(), execution);
+        return execution.finish();
+    }
+
+    /**
+     * 取消执行
+     *
+     * @return 是否找到该执行（正在运行或排队中）
+     */
+    public synchronized boolean cancel(String executionId) {
+        RunningExecution execution = executions.get(executionId);
+        if (execution != null) {
+            terminate(execution, ExecutionStatus.CANCELLED, "Script execution was cancelled");
+            return true;
+        }
+        if (pending.contains(executionId)) {
+            cancelledPending.add(executionId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 正在运行的执行
+     */
+    public List<RunningExecution> getRunningExecutions() {
+        return new ArrayList<>(executions.values());
+    }
+
+    /**
+     * 终止一次执行
+     *
+     * @return 是否由本次调用发起终止
+     */
+    public boolean terminate(RunningExecution execution, ExecutionStatus status, String message) {
+        if (!execution.beginTermination(status, message)) {
+            return false;
+        }
+        if (status == ExecutionStatus.TIMEOUT) {
+            timeouts.incrementAndGet();
+        } else if (status == ExecutionStatus.MEMORY_LIMIT) {
+            memoryLimitExceeded.incrementAndGet();
+        } else if (status == ExecutionStatus.CPU_TIME_LIMIT) {
+            cpuTimeLimitExceeded.incrementAndGet();
+        } else if (status == ExecutionStatus.CANCELLED) {
+            cancellations.incrementAndGet();
+        }
+        terminator.execute(() -> {
+            if (execution.interrupt(interruptGrace)) {
+                forcedTerminations.incrementAndGet();
+                LOG.warnf("Script did not stop within %s after interrupt, context closed", interruptGrace);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 看门狗统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", executions.size());
+        synchronized (this) {
+            stats.put("pending", pending.size());
+        }
+        stats.put("timeouts", timeouts.get());
+        stats.put("memoryLimitExceeded", memoryLimitExceeded.get());
+        stats.put("cpuTimeLimitExceeded", cpuTimeLimitExceeded.get());
+        stats.put("cancellations", cancellations.get());
+        stats.put("allocationTracking", RunningExecution.isAllocationTrackingSupported());
+        stats.put("cpuTimeTracking", RunningExecution.isCpuTimeTrackingSupported());
+        stats.put("forcedTerminations", forcedTerminations.get());
+        stats.put("unenforcedBudgets", unenforcedBudgets.get());
+        return stats;
+    }
+
+    private void check() {
+        long now = System.currentTimeMillis();
+        for (RunningExecution execution : executions.values()) {
+            try {
+                long deadline = execution.getDeadline();
+                if (!execution.isRunning()) {
+                    continue;
+                }
+                if (deadline > 0 && now >= deadline) {
+                    terminate(execution, ExecutionStatus.TIMEOUT,
+                            "Script execution timed out after " + execution.getMaxExecutionTime() + " ms");
+                } else if (execution.isOverAllocationBudget()) {
+                    terminate(execution, ExecutionStatus.MEMORY_LIMIT,
+                            "Script exceeded memory limit of " + execution.getMaxAllocatedBytes() + " allocated bytes");
+                } else if (execution.isOverCpuBudget()) {
+                    terminate(execution, ExecutionStatus.CPU_TIME_LIMIT,
+                            "Script exceeded CPU time limit of " + execution.getMaxCpuTime() + " ms");
+                }
+            } catch (Exception e) {
+                LOG.warn("Watchdog check failed", e);
+            }
+        }
+    }
+}
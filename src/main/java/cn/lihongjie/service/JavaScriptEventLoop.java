@@ -0,0 +1,252 @@
+package cn.lihongjie.service;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单次执行的 JavaScript 事件循环
+ *
+ * 在主机侧实现 setTimeout/setInterval：定时器进入按到期时间排序的队列，
+ * 主脚本执行完成后按顺序运行回调，等待期间线程挂起而不占用 CPU。
+ * 定时器只在执行线程上调度和运行，只有 {@link #stop()} 会从其他线程调用。
+ */
+public class JavaScriptEventLoop {
+
+    /**
+     * 单次执行允许的最大待处理定时器数量
+     */
+    static final int MAX_PENDING_TIMERS = 10_000;
+
+    private final Context context;
+    private final PrintStream errorOutput;
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(
+            Comparator.comparingLong((Timer timer) -> timer.due).thenComparingLong(timer -> timer.sequence));
+    private final Map<Integer, Timer> pending = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeup = lock.newCondition();
+    private volatile boolean stopped;
+    private int nextId = 1;
+    private long nextSequence;
+
+    public JavaScriptEventLoop(Context context, PrintStream errorOutput) {
+        this.context = context;
+        this.errorOutput = errorOutput;
+    }
+
+    /**
+     * 将定时器函数安装到上下文的全局对象，每次执行都会重新安装以绑定到本次事件循环
+     */
+    public void install() {
+        Value bindings = context.getBindings("js");
+        bindings.putMember("setTimeout", (ProxyExecutable) args -> schedule(args, false));
+        bindings.putMember("setInterval", (ProxyExecutable) args -> schedule(args, true));
+        bindings.putMember("clearTimeout", (ProxyExecutable) this::clear);
+        bindings.putMember("clearInterval", (ProxyExecutable) this::clear);
+    }
+
+    /**
+     * 是否还有待运行的定时器
+     */
+    public boolean hasPendingTimers() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * 运行事件循环直到结束；若脚本结果是 Promise 或 thenable，返回其完成值
+     *
+     * @param result 主脚本或入口函数的返回值
+     * @param deadline 截止时间（毫秒时间戳），小于等于0表示不限制
+     * @param maxExecutionTime 超时时报告的最大执行时间
+     * @throws ScriptPromiseRejectedException Promise 被拒绝或在事件循环结束时仍未完成
+     */
+    public Value complete(Value result, long deadline, long maxExecutionTime) {
+        if (!isThenable(result)) {
+            run(deadline, maxExecutionTime);
+            return result;
+        }
+
+        Value[] settlement = new Value[1];
+        boolean[] state = new boolean[2]; // [已完成, 已拒绝]
+        result.invokeMember("then",
+                (ProxyExecutable) args -> {
+                    state[0] = true;
+                    settlement[0] = args.length > 0 ? args[0] : null;
+                    return null;
+                },
+                (ProxyExecutable) args -> {
+                    state[0] = true;
+                    state[1] = true;
+                    settlement[0] = args.length > 0 ? args[0] : null;
+                    return null;
+                });
+
+        // Promise 的后续任务在每次回到主机时自动执行，定时器回调则由事件循环驱动
+        run(deadline, maxExecutionTime);
+
+        if (!state[0]) {
+            throw new ScriptPromiseRejectedException("Promise was never settled: no pending timers left to resolve it");
+        }
+        if (state[1]) {
+            throw new ScriptPromiseRejectedException("Uncaught (in promise) " + describe(settlement[0]));
+        }
+        return settlement[0];
+    }
+
+    /**
+     * 运行事件循环直到没有待处理的定时器
+     *
+     * @param deadline 截止时间（毫秒时间戳），小于等于0表示不限制
+     * @param maxExecutionTime 超时时报告的最大执行时间
+     */
+    public void run(long deadline, long maxExecutionTime) {
+        while (true) {
+            Timer timer = timers.peek();
+            if (timer == null) {
+                return;
+            }
+            if (timer.cancelled) {
+                timers.poll();
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            if (deadline > 0 && now >= deadline) {
+                throw new ScriptTimeoutException(maxExecutionTime);
+            }
+            if (timer.due > now) {
+                long wakeAt = deadline > 0 ? Math.min(timer.due, deadline) : timer.due;
+                await(wakeAt - now);
+                continue;
+            }
+
+            timers.poll();
+            if (timer.repeat) {
+                timer.due = now + timer.delay;
+                timer.sequence = nextSequence++;
+                timers.add(timer);
+            } else {
+                pending.remove(timer.id);
+            }
+            fire(timer);
+        }
+    }
+
+    /**
+     * 停止事件循环并唤醒等待中的执行线程
+     */
+    public void stop() {
+        stopped = true;
+        lock.lock();
+        try {
+            wakeup.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isThenable(Value value) {
+        return value != null && value.hasMembers() && value.canInvokeMember("then");
+    }
+
+    private static String describe(Value reason) {
+        if (reason == null || reason.isNull()) {
+            return String.valueOf(reason);
+        }
+        return reason.toString();
+    }
+
+    private Object schedule(Value[] args, boolean repeat) {
+        if (args.length == 0 || !args[0].canExecute()) {
+            throw new IllegalArgumentException("Timer callback must be a function");
+        }
+        if (pending.size() >= MAX_PENDING_TIMERS) {
+            throw new IllegalStateException("Too many pending timers (max " + MAX_PENDING_TIMERS + ")");
+        }
+
+        long delay = 0;
+        if (args.length > 1 && args[1].isNumber()) {
+            double requested = args[1].asDouble();
+            delay = Double.isNaN(requested) ? 0 : Math.max(0, (long) requested);
+        }
+        if (repeat) {
+            // 与浏览器和 Node.js 一致，间隔至少为1毫秒
+            delay = Math.max(1, delay);
+        }
+
+        Timer timer = new Timer();
+        timer.id = nextId++;
+        timer.callback = args[0];
+        timer.arguments = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new Object[0];
+        timer.delay = delay;
+        timer.repeat = repeat;
+        timer.due = System.currentTimeMillis() + delay;
+        timer.sequence = nextSequence++;
+
+        timers.add(timer);
+        pending.put(timer.id, timer);
+        return timer.id;
+    }
+
+    private Object clear(Value[] args) {
+        if (args.length > 0 && args[0].isNumber() && args[0].fitsInInt()) {
+            Timer timer = pending.remove(args[0].asInt());
+            if (timer != null) {
+                timer.cancelled = true;
+            }
+        }
+        return null;
+    }
+
+    private void fire(Timer timer) {
+        try {
+            timer.callback.execute(timer.arguments);
+        } catch (PolyglotException e) {
+            if (!e.isGuestException() || e.isExit()) {
+                throw e;
+            }
+            // 与浏览器一致，回调中的异常不影响后续定时器
+            errorOutput.println((timer.repeat ? "setInterval" : "setTimeout") + " callback error: " + e.getMessage());
+        }
+    }
+
+    private void await(long millis) {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+            while (nanos > 0 && !stopped) {
+                nanos = wakeup.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } finally {
+            lock.unlock();
+        }
+        if (stopped) {
+            throw new IllegalStateException("Event loop stopped");
+        }
+    }
+
+    private static class Timer {
+        int id;
+        Value callback;
+        Object[] arguments;
+        long delay;
+        long due;
+        long sequence;
+        boolean repeat;
+        boolean cancelled;
+    }
+}
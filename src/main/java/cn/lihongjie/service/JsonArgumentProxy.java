@@ -0,0 +1,260 @@
+package cn.lihongjie.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyHashMap;
+import org.graalvm.polyglot.proxy.ProxyIterator;
+import org.graalvm.polyglot.proxy.ProxyObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以代理的形式把已解析的 JSON 参数交给脚本，读取某个成员或元素时才转换该节点
+ *
+ * 对象在 JS 中为普通对象，在 Python 中同时支持 {@code obj['key']} 和 {@code obj.key}；数组为固定长度的数组。
+ * 读取过的子节点会被缓存，同一成员两次读取得到同一个对象；可以修改已有元素和成员，不回写到 JSON 树。
+ * 不依赖主机访问权限。
+ */
+final class JsonArgumentProxy {
+
+    private JsonArgumentProxy() {
+    }
+
+    /**
+     * 将 JSON 节点转换为脚本参数：标量直接转换，对象和数组包装为代理
+     */
+    static Object wrap(JsonNode node, Context context, String language) {
+        return wrap(node, new Scope(context, language));
+    }
+
+    private static Object wrap(JsonNode node, Scope scope) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+        if (node.isObject()) {
+            return scope.dict ? new DictProxy((ObjectNode) node, scope) : new ObjectProxy((ObjectNode) node, scope);
+        }
+        if (node.isArray()) {
+            return new ArrayProxy((ArrayNode) node, scope);
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isInt()) {
+            return node.intValue();
+        }
+        if (node.isLong()) {
+            return node.longValue();
+        }
+        if (node.isBigInteger()) {
+            return node.bigIntegerValue();
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isBinary()) {
+            // CBOR 等二进制格式中的字节串：JS 中为 Uint8Array，其他语言为 0-255 的整数数组
+            try {
+                return TypedArrays.toGuest(scope.context, scope.language, ByteBuffer.wrap(node.binaryValue()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (node instanceof POJONode pojo) {
+            return pojo.getPojo();
+        }
+        return node.asText();
+    }
+
+    /**
+     * 代理所在的上下文和语言，dict 表示对象同时作为字典（Python）
+     */
+    private record Scope(Context context, String language, boolean dict) {
+        Scope(Context context, String language) {
+            this(context, language, "python".equals(language));
+        }
+    }
+
+    /**
+     * JSON 对象的代理，成员在第一次读取时转换
+     */
+    private static class ObjectProxy implements ProxyObject {
+        final ObjectNode node;
+        final Scope scope;
+        private Map<String, Object> members;
+
+        ObjectProxy(ObjectNode node, Scope scope) {
+            this.node = node;
+            this.scope = scope;
+        }
+
+        @Override
+        public Object getMember(String key) {
+            if (members != null && members.containsKey(key)) {
+                return members.get(key);
+            }
+            JsonNode child = node.get(key);
+            if (child == null) {
+                return null;
+            }
+            Object value = wrap(child, scope);
+            if (child.isContainerNode()) {
+                materialized().put(key, value);
+            }
+            return value;
+        }
+
+        @Override
+        public Object getMemberKeys() {
+            return ProxyArray.fromList(new ArrayList<>(keys()));
+        }
+
+        @Override
+        public boolean hasMember(String key) {
+            return node.has(key) || (members != null && members.containsKey(key));
+        }
+
+        @Override
+        public void putMember(String key, Value value) {
+            materialized().put(key, value);
+        }
+
+        /**
+         * JSON 中的键，以及脚本新增的键
+         */
+        List<String> keys() {
+            List<String> keys = new ArrayList<>(node.size());
+            node.fieldNames().forEachRemaining(keys::add);
+            if (members != null) {
+                for (String key : members.keySet()) {
+                    if (!node.has(key)) {
+                        keys.add(key);
+                    }
+                }
+            }
+            return keys;
+        }
+
+        private Map<String, Object> materialized() {
+            if (members == null) {
+                members = new HashMap<>();
+            }
+            return members;
+        }
+    }
+
+    /**
+     * Python 中的对象代理，额外支持按键读取和遍历键
+     */
+    private static class DictProxy extends ObjectProxy implements ProxyHashMap {
+
+        DictProxy(ObjectNode node, Scope scope) {
+            super(node, scope);
+        }
+
+        @Override
+        public long getHashSize() {
+            return keys().size();
+        }
+
+        @Override
+        public boolean hasHashEntry(Value key) {
+            return key.isString() && hasMember(key.asString());
+        }
+
+        @Override
+        public Object getHashValue(Value key) {
+            return key.isString() ? getMember(key.asString()) : null;
+        }
+
+        @Override
+        public void putHashEntry(Value key, Value value) {
+            putMember(key.isString() ? key.asString() : key.toString(), value);
+        }
+
+        @Override
+        public Object getHashEntriesIterator() {
+            Iterator<String> keys = keys().iterator();
+            return new ProxyIterator() {
+                @Override
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                @Override
+                public Object getNext() {
+                    String key = keys.next();
+                    return ProxyArray.fromArray(key, getMember(key));
+                }
+            };
+        }
+    }
+
+    /**
+     * JSON 数组的代理，元素在第一次读取时转换
+     */
+    private static class ArrayProxy implements ProxyArray {
+        final ArrayNode node;
+        final Scope scope;
+        private Object[] elements;
+
+        ArrayProxy(ArrayNode node, Scope scope) {
+            this.node = node;
+            this.scope = scope;
+        }
+
+        @Override
+        public Object get(long index) {
+            checkIndex(index);
+            int i = (int) index;
+            if (elements != null && elements[i] != null) {
+                return elements[i];
+            }
+            JsonNode child = node.get(i);
+            Object value = wrap(child, scope);
+            if (child.isContainerNode()) {
+                materialized()[i] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            checkIndex(index);
+            materialized()[(int) index] = value;
+        }
+
+        @Override
+        public long getSize() {
+            return node.size();
+        }
+
+        private void checkIndex(long index) {
+            if (index < 0 || index >= node.size()) {
+                throw new ArrayIndexOutOfBoundsException("invalid index " + index);
+            }
+        }
+
+        private Object[] materialized() {
+            if (elements == null) {
+                elements = new Object[node.size()];
+            }
+            return elements;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.LanguageInfo;
+import cn.lihongjie.model.ScriptPermissions;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Language;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 已安装语言的不可变快照
+ *
+ * 启动时从共享 Engine 读取一次语言元数据，之后的可用性检查和别名解析都不再构建上下文。
+ */
+@Startup
+@ApplicationScoped
+public class LanguageCatalog {
+
+    private static final Logger LOG = Logger.getLogger(LanguageCatalog.class);
+
+    /**
+     * 常用别名到语言ID的映射
+     */
+    private static final Map<String, String> ALIASES = Map.of(
+            "javascript", "js",
+            "ecmascript", "js",
+            "py", "python",
+            "python3", "python"
+    );
+
+    /**
+     * 合法的MIME类型（GraalPy 会额外注册带控制字符的内部编译MIME类型，需要过滤）
+     */
+    private static final Pattern MIME_TYPE = Pattern.compile("[a-z0-9.+-]+/[a-z0-9.+-]+");
+
+    @Inject
+    PolyglotEngineProvider engineProvider;
+
+    private Map<String, LanguageInfo> languages = Map.of();
+    private Map<String, String> lookup = Map.of();
+    private String[] languageIds = new String[0];
+
+    @PostConstruct
+    void init() {
+        try {
+            if (engineProvider.isShared()) {
+                load(engineProvider.getEngine(ScriptPermissions.createSandbox()));
+            } else {
+                try (Engine engine = Engine.create()) {
+                    load(engine);
+                }
+            }
+        } catch (Exception e) {
+            // 如果GraalVM语言不可用，返回基本支持
+            LOG.warnf(e, "Failed to read installed languages, falling back to js and python");
+            languages = Map.of();
+            languageIds = new String[]{"js", "python"};
+            lookup = Map.of("js", "js", "python", "python", "javascript", "js");
+        }
+    }
+
+    private void load(Engine engine) {
+        Map<String, List<String>> aliasesById = new HashMap<>();
+        ALIASES.forEach((alias, id) -> aliasesById.computeIfAbsent(id, k -> new ArrayList<>()).add(alias));
+
+        Map<String, LanguageInfo> infos = new LinkedHashMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (Language language : engine.getLanguages().values()) {
+            List<String> aliases = aliasesById.getOrDefault(language.getId(), List.of()).stream().sorted().toList();
+            LanguageInfo info = new LanguageInfo(
+                    language.getId(),
+                    language.getName(),
+                    language.getImplementationName(),
+                    language.getVersion(),
+                    language.getDefaultMimeType(),
+                    language.getMimeTypes().stream()
+                            .filter(mimeType -> MIME_TYPE.matcher(mimeType).matches())
+                            .sorted()
+                            .toList(),
+                    aliases);
+            infos.put(language.getId(), info);
+            names.put(language.getId(), language.getId());
+            aliases.forEach(alias -> names.put(alias, language.getId()));
+        }
+
+        languages = Collections.unmodifiableMap(infos);
+        lookup = Map.copyOf(names);
+        languageIds = infos.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * 已安装语言ID列表
+     */
+    public String[] getLanguageIds() {
+        return languageIds.clone();
+    }
+
+    /**
+     * 已安装语言的详细信息
+     */
+    public Collection<LanguageInfo> getLanguages() {
+        return languages.values();
+    }
+
+    /**
+     * 语言ID或别名是否可用
+     */
+    public boolean isAvailable(String language) {
+        return language != null && lookup.containsKey(language);
+    }
+
+    /**
+     * 将语言ID或别名解析为标准语言ID，未安装的语言原样返回
+     */
+    public String resolve(String language) {
+        if (language == null) {
+            return null;
+        }
+        return lookup.getOrDefault(language, language);
+    }
+}
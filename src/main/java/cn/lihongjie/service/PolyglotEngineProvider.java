@@ -0,0 +1,85 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ScriptPermissions;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Engine;
+
+/**
+ * 共享的 GraalVM Engine 提供者
+ *
+ * 所有脚本上下文都挂在长期存活的 Engine 上，解析后的 AST 和 JIT 编译结果可以在请求之间复用。
+ * GraalVM 要求同一个 Engine 下的所有上下文使用相同的主机访问配置，
+ * 因此按主机访问权限拆分为两个 Engine：沙盒 Engine 与主机访问 Engine。
+ */
+@ApplicationScoped
+public class PolyglotEngineProvider {
+
+    @ConfigProperty(name = "script.engine.shared", defaultValue = "true")
+    boolean shared;
+
+    private volatile Engine sandboxEngine;
+    private volatile Engine hostAccessEngine;
+
+    /**
+     * 判断权限配置是否需要主机访问（原生模块和网络操作依赖主机访问）
+     */
+    public static boolean requiresHostAccess(ScriptPermissions permissions) {
+        return permissions.isAllowHostAccess() || permissions.isAllowNetwork();
+    }
+
+    /**
+     * 是否启用共享 Engine
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * 获取与权限配置匹配的共享 Engine
+     */
+    public Engine getEngine(ScriptPermissions permissions) {
+        if (requiresHostAccess(permissions)) {
+            Engine engine = hostAccessEngine;
+            if (engine == null) {
+                synchronized (this) {
+                    if (hostAccessEngine == null) {
+                        hostAccessEngine = createEngine();
+                    }
+                    engine = hostAccessEngine;
+                }
+            }
+            return engine;
+        }
+
+        Engine engine = sandboxEngine;
+        if (engine == null) {
+            synchronized (this) {
+                if (sandboxEngine == null) {
+                    sandboxEngine = createEngine();
+                }
+                engine = sandboxEngine;
+            }
+        }
+        return engine;
+    }
+
+    private Engine createEngine() {
+        return Engine.newBuilder()
+                .allowExperimentalOptions(true)
+                .build();
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (sandboxEngine != null) {
+            sandboxEngine.close(true);
+            sandboxEngine = null;
+        }
+        if (hostAccessEngine != null) {
+            hostAccessEngine.close(true);
+            hostAccessEngine = null;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cn.lihongjie.service;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 池化的脚本上下文
+ *
+ * 上下文的输出流在创建时固定，因此通过可切换的输出流在每次借出时绑定到本次执行的输出。
+ */
+public class PooledContext {
+
+    private final ScriptContextPool.ContextKey key;
+    private final Context context;
+    private final SwitchableOutputStream output;
+    private final boolean pooled;
+    private final long createdAt;
+    private Set<String> baselineBindings = Set.of();
+    private Value integrityCheck;
+    private int uses;
+    private volatile long lastUsedAt;
+
+    PooledContext(ScriptContextPool.ContextKey key, Context context, SwitchableOutputStream output, boolean pooled) {
+        this.key = key;
+        this.context = context;
+        this.output = output;
+        this.pooled = pooled;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+    }
+
+    public ScriptContextPool.ContextKey getKey() {
+        return key;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * 是否属于上下文池（溢出时创建的临时上下文用完即关闭）
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public int getUses() {
+        return uses;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    /**
+     * 将上下文输出绑定到本次执行
+     */
+    void bindOutput(OutputStream target) {
+        output.setTarget(target);
+    }
+
+    void markCheckedOut() {
+        uses++;
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    void markReturned() {
+        output.setTarget(null);
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录初始全局绑定和内置对象快照，归还时据此清理脚本新增的全局变量并检查内置对象是否被修改
+     */
+    void captureBaseline() {
+        integrityCheck = ContextIntegrity.capture(context, key.language());
+        baselineBindings = new HashSet<>(context.getBindings(key.language()).getMemberKeys());
+    }
+
+    /**
+     * 清理本次执行新增的全局绑定，并检查内置对象和原型是否与创建时一致
+     *
+     * @return 清理成功且内置对象未被修改时返回 true；存在无法删除的绑定（如 JavaScript 顶层 let/const/var/function 声明）、
+     *         内置对象被修改或语言不支持检查时返回 false，此时上下文不能安全复用
+     */
+    boolean scrub() {
+        Value bindings = context.getBindings(key.language());
+        for (String name : bindings.getMemberKeys().toArray(new String[0])) {
+            if (baselineBindings.contains(name)) {
+                continue;
+            }
+            try {
+                if (!bindings.removeMember(name)) {
+                    return false;
+                }
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        }
+        return integrityCheck != null && integrityCheck.execute().asBoolean();
+    }
+
+    void close() {
+        try {
+            context.close(true);
+        } catch (Exception e) {
+            // 上下文可能已被强制关闭
+        }
+    }
+
+    /**
+     * 可切换目标的输出流，未绑定时丢弃输出
+     */
+    static class SwitchableOutputStream extends OutputStream {
+        private volatile OutputStream target;
+
+        void setTarget(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            OutputStream current = target;
+            if (current != null) {
+                current.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            OutputStream current = target;
+            if (current != null) {
+                current.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            OutputStream current = target;
+            if (current != null) {
+                current.flush();
+            }
+        }
+    }
+}
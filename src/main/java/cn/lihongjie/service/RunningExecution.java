@@ -0,0 +1,279 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.ScriptPermissions;
+import org.graalvm.polyglot.Context;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 正在运行的脚本执行
+ *
+ * 记录执行线程、上下文和资源预算，并协调终止与正常结束：
+ * 一旦开始终止，执行线程会等待中断完成后才归还上下文，避免中断落到下一次借出该上下文的执行上。
+ *
+ * 内存分配按执行线程的累计分配字节数统计（{@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes}），
+ * 包括已被回收的对象；累计分配量不小于存活内存，因此该预算同时是内存占用的上限（maxMemoryUsage 已废弃，不生效）；
+ * CPU时间按执行线程的CPU时间统计，脚本创建的其他线程均不计入。
+ */
+public class RunningExecution {
+
+    private static final int RUNNING = 0;
+    private static final int TERMINATING = 1;
+    private static final int FINISHED = 2;
+    private static final long RETRY_INTERVAL_MILLIS = 10;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+    private final String id;
+    private final Context context;
+    private final Thread thread;
+    private final long startTime;
+    private final long maxExecutionTime;
+    private final long maxAllocatedBytes;
+    private final long maxCpuTime;
+    private final long allocationBaseline;
+    private final long cpuTimeBaseline;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile JavaScriptEventLoop eventLoop;
+    private volatile ExecutionStatus terminationStatus;
+    private volatile String terminationMessage;
+    private volatile boolean exited;
+
+    RunningExecution(String id, Context context, Thread thread, long startTime, ScriptPermissions permissions) {
+        this.id = id;
+        this.context = context;
+        this.thread = thread;
+        this.startTime = startTime;
+        this.maxExecutionTime = permissions.getMaxExecutionTime();
+        this.maxAllocatedBytes = permissions.getMaxAllocatedBytes();
+        this.maxCpuTime = permissions.getMaxCpuTime();
+        this.allocationBaseline = threadAllocatedBytes(thread);
+        this.cpuTimeBaseline = threadCpuTime(thread);
+    }
+
+    /**
+     * 当前 JVM 是否支持按线程统计分配字节数
+     */
+    public static boolean isAllocationTrackingSupported() {
+        return ALLOCATIONS != null;
+    }
+
+    /**
+     * 当前 JVM 是否支持按线程统计CPU时间
+     */
+    public static boolean isCpuTimeTrackingSupported() {
+        return THREADS.isThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+
+    /**
+     * 截止时间（毫秒时间戳），0表示不限制
+     */
+    public long getDeadline() {
+        return maxExecutionTime > 0 ? startTime + maxExecutionTime : 0;
+    }
+
+    public long getMaxAllocatedBytes() {
+        return maxAllocatedBytes;
+    }
+
+    /**
+     * 自登记以来执行线程分配的字节数，不支持统计时返回0
+     */
+    public long getAllocatedBytes() {
+        long current = threadAllocatedBytes(thread);
+        return current < 0 || allocationBaseline < 0 ? 0 : current - allocationBaseline;
+    }
+
+    /**
+     * 是否超过内存分配预算
+     */
+    public boolean isOverAllocationBudget() {
+        return maxAllocatedBytes > 0 && getAllocatedBytes() > maxAllocatedBytes;
+    }
+
+    public long getMaxCpuTime() {
+        return maxCpuTime;
+    }
+
+    /**
+     * 自登记以来执行线程消耗的CPU时间（纳秒），不支持统计时返回0
+     */
+    public long getCpuTimeNanos() {
+        long current = threadCpuTime(thread);
+        return current < 0 || cpuTimeBaseline < 0 ? 0 : current - cpuTimeBaseline;
+    }
+
+    /**
+     * 是否超过CPU时间预算
+     */
+    public boolean isOverCpuBudget() {
+        return maxCpuTime > 0 && getCpuTimeNanos() > TimeUnit.MILLISECONDS.toNanos(maxCpuTime);
+    }
+
+    /**
+     * 设置了但无法强制的预算名称：执行线程不支持统计CPU时间或分配字节数（如虚拟线程）时相应预算不生效
+     */
+    public List<String> getUnenforcedLimits() {
+        List<String> limits = new ArrayList<>();
+        if (maxCpuTime > 0 && cpuTimeBaseline < 0) {
+            limits.add("maxCpuTime");
+        }
+        if (maxAllocatedBytes > 0 && allocationBaseline < 0) {
+            limits.add("maxAllocatedBytes");
+        }
+        return limits;
+    }
+
+    public boolean isRunning() {
+        return state.get() == RUNNING;
+    }
+
+    /**
+     * 被终止的原因，正常运行时为 null
+     */
+    public ExecutionStatus getTerminationStatus() {
+        return terminationStatus;
+    }
+
+    public String getTerminationMessage() {
+        return terminationMessage;
+    }
+
+    void setEventLoop(JavaScriptEventLoop eventLoop) {
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * 标记为终止状态
+     *
+     * @return 是否由本次调用获得终止权（执行已结束或已在终止中时返回 false）
+     */
+    boolean beginTermination(ExecutionStatus status, String message) {
+        if (!state.compareAndSet(RUNNING, TERMINATING)) {
+            return false;
+        }
+        terminationStatus = status;
+        terminationMessage = message;
+        return true;
+    }
+
+    /**
+     * 中断上下文中的脚本，超过宽限时间仍未停止则强制关闭上下文
+     *
+     * 中断只对已进入上下文的线程生效，执行线程可能尚未进入（如仍在安装事件循环），
+     * 因此重复中断直到执行线程结束。
+     *
+     * @return 是否强制关闭了上下文
+     */
+    boolean interrupt(Duration grace) {
+        try {
+            JavaScriptEventLoop loop = eventLoop;
+            if (loop != null) {
+                loop.stop();
+            }
+            long giveUpAt = System.nanoTime() + grace.toNanos();
+            while (!exited) {
+                long remaining = giveUpAt - System.nanoTime();
+                if (remaining <= 0) {
+                    context.close(true);
+                    return true;
+                }
+                try {
+                    context.interrupt(Duration.ofNanos(remaining));
+                } catch (TimeoutException e) {
+                    context.close(true);
+                    return true;
+                }
+                if (!exited) {
+                    Thread.sleep(RETRY_INTERVAL_MILLIS);
+                }
+            }
+            return false;
+        } catch (IllegalStateException e) {
+            // 上下文已关闭
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * 执行线程结束时调用
+     *
+     * @return 执行是否未被终止；被终止时会等待中断完成，此时上下文不能复用
+     */
+    boolean finish() {
+        if (state.compareAndSet(RUNNING, FINISHED)) {
+            return true;
+        }
+        exited = true;
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static long threadCpuTime(Thread thread) {
+        if (!isCpuTimeTrackingSupported()) {
+            return -1;
+        }
+        return thread == Thread.currentThread()
+                ? THREADS.getCurrentThreadCpuTime()
+                : THREADS.getThreadCpuTime(thread.threadId());
+    }
+
+    private static long threadAllocatedBytes(Thread thread) {
+        if (ALLOCATIONS == null) {
+            return -1;
+        }
+        return thread == Thread.currentThread()
+                ? ALLOCATIONS.getCurrentThreadAllocatedBytes()
+                : ALLOCATIONS.getThreadAllocatedBytes(thread.threadId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            if (THREADS instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return bean;
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // 不支持时不统计内存
+        }
+        return null;
+    }
+}
@@ -0,0 +1,510 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ScriptPermissions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Context;
+import org.jboss.logging.Logger;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 预热的脚本上下文池
+ *
+ * 按（语言，权限配置）分组维护有界的上下文池，支持借出/归还、归还时清理全局绑定、
+ * 达到最大使用次数后退役以及空闲淘汰。被消耗或退役的上下文由后台线程补充到最小空闲数。
+ * 归还的上下文在后台线程上清理并检查内置对象（见 {@link ContextIntegrity}），被脚本修改过的上下文直接退役；
+ * 不支持检查的语言（如 Python）每次执行都使用新建的临时上下文，只共享 Engine 和 Source。
+ */
+@ApplicationScoped
+public class ScriptContextPool {
+
+    private static final Logger LOG = Logger.getLogger(ScriptContextPool.class);
+
+    @ConfigProperty(name = "script.context-pool.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "script.context-pool.max-size", defaultValue = "8")
+    int maxSize;
+
+    @ConfigProperty(name = "script.context-pool.min-idle", defaultValue = "1")
+    int minIdle;
+
+    @ConfigProperty(name = "script.context-pool.max-uses", defaultValue = "100")
+    int maxUses;
+
+    @ConfigProperty(name = "script.context-pool.idle-timeout", defaultValue = "5m")
+    Duration idleTimeout;
+
+    @ConfigProperty(name = "script.context-pool.acquire-timeout", defaultValue = "2s")
+    Duration acquireTimeout;
+
+    @ConfigProperty(name = "script.context-pool.prewarm-languages", defaultValue = "js")
+    List<String> prewarmLanguages;
+
+    @ConfigProperty(name = "script.context-pool.return-threads", defaultValue = "2")
+    int returnThreads;
+
+    @ConfigProperty(name = "script.context-pool.return-queue", defaultValue = "64")
+    int returnQueue;
+
+    private final ConcurrentHashMap<ContextKey, KeyedPool> pools = new ConcurrentHashMap<>();
+    private ScheduledExecutorService maintenance;
+    private ExecutorService returns;
+
+    /**
+     * 上下文池的分组键：语言 + 影响上下文构建的权限配置
+     */
+    public record ContextKey(String language, String profile) {
+
+        public static ContextKey of(String language, ScriptPermissions permissions) {
+            String profile = "io=" + permissions.isAllowIO()
+                    + ",network=" + permissions.isAllowNetwork()
+                    + ",host=" + permissions.isAllowHostAccess()
+                    + ",thread=" + permissions.isAllowCreateThread()
+                    + ",env=" + permissions.isAllowEnvironmentAccess();
+            // 语句数限制在创建上下文时固定，不同限制的上下文不能互换
+            if (permissions.getMaxStatements() > 0) {
+                profile += ",statements=" + permissions.getMaxStatements();
+            }
+            return new ContextKey(language, profile);
+        }
+    }
+
+    /**
+     * 上下文创建回调，由调用方负责权限配置和初始化
+     */
+    @FunctionalInterface
+    public interface ContextCreator {
+        Context create(OutputStream output);
+    }
+
+    @PostConstruct
+    void init() {
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "script-context-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int threads = Math.max(1, returnThreads);
+        ThreadPoolExecutor returnExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, returnQueue)), r -> {
+                    Thread thread = new Thread(r, "script-context-return");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        returnExecutor.allowCoreThreadTimeOut(true);
+        returns = returnExecutor;
+        long sweepMillis = Math.max(1000, idleTimeout.toMillis() / 2);
+        maintenance.scheduleAtFixedRate(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        maintenance.shutdownNow();
+        returns.shutdownNow();
+        pools.values().forEach(KeyedPool::closeIdle);
+        pools.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> getPrewarmLanguages() {
+        return prewarmLanguages;
+    }
+
+    /**
+     * 借出上下文；池已满且等待超时时创建一次性的临时上下文，虚拟线程上只等待正在归还的上下文
+     */
+    public PooledContext acquire(ContextKey key, ContextCreator creator) {
+        if (!enabled || !ContextIntegrity.isSupported(key.language())) {
+            return createTransient(key, creator);
+        }
+        KeyedPool pool = pools.computeIfAbsent(key, KeyedPool::new);
+        pool.creator = creator;
+        return pool.borrow();
+    }
+
+    /**
+     * 创建不进入池的临时上下文，归还时直接关闭
+     */
+    public PooledContext createTransient(ContextKey key, ContextCreator creator) {
+        return newContext(key, creator, false);
+    }
+
+    /**
+     * 归还上下文
+     *
+     * @param reusable 执行是否正常结束；被取消、超限或内部错误的上下文不会回到池中
+     */
+    public void release(PooledContext pooledContext, boolean reusable) {
+        if (!pooledContext.isPooled()) {
+            pooledContext.close();
+            return;
+        }
+        KeyedPool pool = pools.get(pooledContext.getKey());
+        if (pool == null) {
+            pooledContext.close();
+            return;
+        }
+        pool.giveBack(pooledContext, reusable);
+    }
+
+    /**
+     * 异步预热指定分组的上下文
+     */
+    public void prewarm(ContextKey key, ContextCreator creator) {
+        if (!enabled || minIdle <= 0 || !ContextIntegrity.isSupported(key.language())) {
+            return;
+        }
+        KeyedPool pool = pools.computeIfAbsent(key, KeyedPool::new);
+        pool.creator = creator;
+        pool.scheduleRefill();
+    }
+
+    /**
+     * 上下文池统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hits = 0, misses = 0, overflows = 0, retired = 0, evicted = 0, waits = 0, waitNanos = 0, maxWaitNanos = 0;
+        List<Map<String, Object>> groups = new ArrayList<>();
+        for (KeyedPool pool : pools.values()) {
+            pool.lock.lock();
+            try {
+                hits += pool.hits;
+                misses += pool.misses;
+                overflows += pool.overflows;
+                retired += pool.retired;
+                evicted += pool.evicted;
+                waits += pool.waits;
+                waitNanos += pool.waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, pool.maxWaitNanos);
+
+                Map<String, Object> group = new LinkedHashMap<>();
+                group.put("language", pool.key.language());
+                group.put("profile", pool.key.profile());
+                group.put("idle", pool.idle.size());
+                group.put("active", pool.active);
+                group.put("returning", pool.returning);
+                group.put("total", pool.total);
+                group.put("hits", pool.hits);
+                group.put("misses", pool.misses);
+                group.put("overflows", pool.overflows);
+                group.put("retired", pool.retired);
+                group.put("evicted", pool.evicted);
+                groups.add(group);
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+
+        long acquisitions = hits + misses + overflows;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxSize", maxSize);
+        stats.put("minIdle", minIdle);
+        stats.put("maxUses", maxUses);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("overflows", overflows);
+        stats.put("hitRate", acquisitions == 0 ? 0.0 : (double) hits / acquisitions);
+        stats.put("retired", retired);
+        stats.put("evicted", evicted);
+        stats.put("waits", waits);
+        stats.put("avgWaitMillis", acquisitions == 0 ? 0.0 : waitNanos / 1_000_000.0 / acquisitions);
+        stats.put("maxWaitMillis", maxWaitNanos / 1_000_000.0);
+        stats.put("groups", groups);
+        return stats;
+    }
+
+    private PooledContext newContext(ContextKey key, ContextCreator creator, boolean pooled) {
+        PooledContext.SwitchableOutputStream output = new PooledContext.SwitchableOutputStream();
+        PooledContext pooledContext = new PooledContext(key, creator.create(output), output, pooled);
+        if (pooled) {
+            pooledContext.captureBaseline();
+        }
+        return pooledContext;
+    }
+
+    private void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeout.toMillis();
+        for (KeyedPool pool : pools.values()) {
+            List<PooledContext> expired = new ArrayList<>();
+            pool.lock.lock();
+            try {
+                Iterator<PooledContext> iterator = pool.idle.iterator();
+                while (iterator.hasNext()) {
+                    PooledContext pooledContext = iterator.next();
+                    if (pooledContext.getLastUsedAt() < deadline) {
+                        iterator.remove();
+                        pool.total--;
+                        pool.evicted++;
+                        expired.add(pooledContext);
+                    }
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+            expired.forEach(PooledContext::close);
+        }
+    }
+
+    /**
+     * 单个分组的上下文池
+     */
+    private class KeyedPool {
+        final ContextKey key;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition available = lock.newCondition();
+        final ArrayDeque<PooledContext> idle = new ArrayDeque<>();
+        final AtomicBoolean refilling = new AtomicBoolean(false);
+        volatile ContextCreator creator;
+
+        int active;
+        int returning;
+        int waiting;
+        int total;
+        long hits;
+        long misses;
+        long overflows;
+        long retired;
+        long evicted;
+        long waits;
+        long waitNanos;
+        long maxWaitNanos;
+
+        KeyedPool(ContextKey key) {
+            this.key = key;
+        }
+
+        PooledContext borrow() {
+            long start = System.nanoTime();
+            long remaining = acquireTimeout.toNanos();
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    // 后进先出，让最近使用的上下文保持热度，较旧的自然空闲淘汰
+                    PooledContext pooledContext = idle.pollLast();
+                    if (pooledContext != null) {
+                        active++;
+                        hits++;
+                        recordWait(start);
+                        pooledContext.markCheckedOut();
+                        scheduleRefill();
+                        return pooledContext;
+                    }
+                    if (returning > waiting && remaining > 0) {
+                        // 正在归还的上下文检查完成后即可复用，比创建新上下文快；每个归还中的上下文只对应一个等待方
+                        waits++;
+                        waiting++;
+                        try {
+                            remaining = available.awaitNanos(remaining);
+                        } finally {
+                            waiting--;
+                        }
+                        continue;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        active++;
+                        misses++;
+                        recordWait(start);
+                        create = true;
+                        break;
+                    }
+                    // 虚拟线程上的并发数远大于池容量，等待借出中的上下文只会让超出的执行空等；
+                    // 平台线程上的并发受执行线程池限制，等待到超时为止以限制临时上下文的数量
+                    if (remaining <= 0 || Thread.currentThread().isVirtual()) {
+                        overflows++;
+                        recordWait(start);
+                        break;
+                    }
+                    waits++;
+                    waiting++;
+                    try {
+                        remaining = available.awaitNanos(remaining);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a script context", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (!create) {
+                return createTransient(key, creator);
+            }
+            try {
+                PooledContext pooledContext = newContext(key, creator, true);
+                pooledContext.markCheckedOut();
+                return pooledContext;
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    total--;
+                    active--;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+
+        void giveBack(PooledContext pooledContext, boolean reusable) {
+            pooledContext.markReturned();
+            if (!reusable || pooledContext.getUses() >= maxUses) {
+                finishReturn(pooledContext, false, false);
+                return;
+            }
+
+            // 清理和完整性检查通常不占用执行线程，检查期间上下文仍计为借出
+            lock.lock();
+            try {
+                returning++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                returns.execute(() -> finishReturn(pooledContext, scrubQuietly(pooledContext), true));
+            } catch (RejectedExecutionException e) {
+                if (returns.isShutdown()) {
+                    // 关闭过程中不再复用
+                    finishReturn(pooledContext, false, true);
+                } else {
+                    // 检查队列已满时在执行线程上检查，避免检查线程无限增长
+                    finishReturn(pooledContext, scrubQuietly(pooledContext), true);
+                }
+            }
+        }
+
+        private void finishReturn(PooledContext pooledContext, boolean keep, boolean checked) {
+            lock.lock();
+            try {
+                active--;
+                if (checked) {
+                    returning--;
+                }
+                if (keep) {
+                    idle.addLast(pooledContext);
+                } else {
+                    total--;
+                    retired++;
+                }
+                // 等待归还的借出方可能不止一个，检查结束后都需要重新判断
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (!keep) {
+                pooledContext.close();
+                scheduleRefill();
+            }
+        }
+
+        void scheduleRefill() {
+            if (minIdle <= 0 || !refilling.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                maintenance.execute(this::refill);
+            } catch (Exception e) {
+                // 关闭过程中调度器已停止
+                refilling.set(false);
+            }
+        }
+
+        private void refill() {
+            try {
+                while (true) {
+                    lock.lock();
+                    try {
+                        if (idle.size() >= minIdle || total >= maxSize || creator == null) {
+                            return;
+                        }
+                        total++;
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    PooledContext pooledContext;
+                    try {
+                        pooledContext = newContext(key, creator, true);
+                    } catch (RuntimeException e) {
+                        LOG.warnf(e, "Failed to prewarm script context for %s", key);
+                        lock.lock();
+                        try {
+                            total--;
+                        } finally {
+                            lock.unlock();
+                        }
+                        return;
+                    }
+
+                    lock.lock();
+                    try {
+                        idle.addLast(pooledContext);
+                        available.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } finally {
+                refilling.set(false);
+            }
+        }
+
+        void closeIdle() {
+            lock.lock();
+            try {
+                idle.forEach(PooledContext::close);
+                total -= idle.size();
+                idle.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void recordWait(long start) {
+            long waited = System.nanoTime() - start;
+            waitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+        }
+
+        private boolean scrubQuietly(PooledContext pooledContext) {
+            try {
+                return pooledContext.scrub();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package cn.lihongjie.service;
+
+/**
+ * 执行调度器已饱和（队列已满或排队超时），请求被拒绝
+ */
+public class ScriptExecutionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ScriptExecutionRejectedException(String message) {
+        super(message);
+    }
+}
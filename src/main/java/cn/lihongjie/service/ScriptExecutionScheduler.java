@@ -0,0 +1,266 @@
+package cn.lihongjie.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 脚本执行调度器
+ *
+ * 所有脚本执行都在固定大小的专用线程池上运行，等待队列有界：
+ * 队列已满时立即拒绝，排队超过等待时间的任务也会被拒绝，负载突增时快速失败而不是无限排队。
+ *
+ * 开启虚拟线程模式后，每次执行运行在独立的虚拟线程上，并发数由信号量限制，
+ * 适合大量 sleep 或等待 IO 的脚本；此模式下无法按线程统计CPU时间和内存分配，相应预算不生效，
+ * 在执行结果的 unenforcedLimits 和统计信息中报告。
+ */
+@ApplicationScoped
+public class ScriptExecutionScheduler {
+
+    private static final Logger LOG = Logger.getLogger(ScriptExecutionScheduler.class);
+
+    @ConfigProperty(name = "script.scheduler.max-concurrency")
+    Optional<Integer> configuredMaxConcurrency;
+
+    @ConfigProperty(name = "script.scheduler.queue-capacity", defaultValue = "64")
+    int queueCapacity;
+
+    @ConfigProperty(name = "script.scheduler.queue-timeout", defaultValue = "5s")
+    Duration queueTimeout;
+
+    @ConfigProperty(name = "script.scheduler.virtual-threads", defaultValue = "false")
+    boolean virtualThreads;
+
+    @ConfigProperty(name = "script.scheduler.pinning-diagnostics", defaultValue = "true")
+    boolean pinningDiagnostics;
+
+    @ConfigProperty(name = "script.scheduler.pinning-threshold", defaultValue = "20ms")
+    Duration pinningThreshold;
+
+    /**
+     * 虚拟线程模式下未配置最大并发数时的默认值
+     */
+    static final int DEFAULT_VIRTUAL_CONCURRENCY = 256;
+
+    private int maxConcurrency;
+    private ThreadPoolExecutor executor;
+    private ExecutorService virtualExecutor;
+    private Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private VirtualThreadPinningMonitor pinningMonitor;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queueTimeouts = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        maxConcurrency = configuredMaxConcurrency.filter(value -> value > 0)
+                .orElse(virtualThreads ? DEFAULT_VIRTUAL_CONCURRENCY : Runtime.getRuntime().availableProcessors());
+        if (virtualThreads) {
+            permits = new Semaphore(maxConcurrency);
+            virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("script-vthread-", 0).factory());
+            if (pinningDiagnostics) {
+                pinningMonitor = new VirtualThreadPinningMonitor(pinningThreshold);
+                pinningMonitor.start();
+            }
+            LOG.warnf("Script executions run on virtual threads (max concurrency %d); "
+                    + "maxCpuTime and maxAllocatedBytes are not enforced in this mode and are reported "
+                    + "as unenforcedLimits in execution results", maxConcurrency);
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread thread = new Thread(r, "script-executor-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdownNow();
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.stop();
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @return 任务结果；调度器饱和时以 {@link ScriptExecutionRejectedException} 异常完成
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        QueuedTask<T> queuedTask = new QueuedTask<>(task);
+        if (virtualThreads) {
+            return submitVirtual(queuedTask);
+        }
+        try {
+            executor.execute(queuedTask);
+        } catch (RejectedExecutionException e) {
+            return reject();
+        }
+        submitted.incrementAndGet();
+
+        // 排队超时后从队列中移除，不再占用执行线程
+        Executor expiry = CompletableFuture.delayedExecutor(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        expiry.execute(() -> {
+            if (queuedTask.expire()) {
+                executor.remove(queuedTask);
+                queueTimeouts.incrementAndGet();
+                rejected.incrementAndGet();
+            }
+        });
+        return queuedTask.future;
+    }
+
+    /**
+     * 虚拟线程模式：立即启动虚拟线程，未拿到许可的线程在信号量上等待，等待数即队列长度
+     */
+    private <T> CompletableFuture<T> submitVirtual(QueuedTask<T> queuedTask) {
+        boolean acquired = permits.tryAcquire();
+        if (!acquired && waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            return reject();
+        }
+        submitted.incrementAndGet();
+
+        virtualExecutor.execute(() -> {
+            if (!acquired && !awaitPermit()) {
+                if (queuedTask.expire()) {
+                    queueTimeouts.incrementAndGet();
+                    rejected.incrementAndGet();
+                }
+                return;
+            }
+            try {
+                queuedTask.run();
+            } finally {
+                permits.release();
+            }
+        });
+        return queuedTask.future;
+    }
+
+    private boolean awaitPermit() {
+        try {
+            return permits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private <T> CompletableFuture<T> reject() {
+        rejected.incrementAndGet();
+        return CompletableFuture.failedFuture(new ScriptExecutionRejectedException(
+                "Script executor is busy: " + maxConcurrency + " running, " + queueCapacity + " queued"));
+    }
+
+    /**
+     * 调度器统计信息
+     */
+    public Map<String, Object> getStats() {
+        long count = completed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", virtualThreads ? "virtual" : "platform");
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("queueCapacity", queueCapacity);
+        if (virtualThreads) {
+            stats.put("active", maxConcurrency - permits.availablePermits());
+            stats.put("queued", waiting.get());
+            stats.put("unenforcedBudgets", List.of("maxCpuTime", "maxAllocatedBytes"));
+        } else {
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+        }
+        stats.put("submitted", submitted.get());
+        stats.put("completed", count);
+        stats.put("rejected", rejected.get());
+        stats.put("queueTimeouts", queueTimeouts.get());
+        stats.put("avgQueueWaitMillis", count == 0 ? 0.0 : queueWaitNanos.get() / 1_000_000.0 / count);
+        stats.put("maxQueueWaitMillis", maxQueueWaitNanos.get() / 1_000_000.0);
+        if (pinningMonitor != null) {
+            stats.put("pinning", pinningMonitor.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * 队列中的任务，开始执行和排队超时只有一个会生效
+     */
+    private class QueuedTask<T> implements Runnable {
+        final Supplier<T> task;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final long enqueuedAt = System.nanoTime();
+
+        QueuedTask(Supplier<T> task) {
+            this.task = task;
+        }
+
+        boolean expire() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            future.completeExceptionally(new ScriptExecutionRejectedException(
+                    "Script waited more than " + queueTimeout.toMillis() + " ms in the execution queue"));
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            long waited = System.nanoTime() - enqueuedAt;
+            queueWaitNanos.addAndGet(waited);
+            maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -1,43 +1,155 @@
 package cn.lihongjie.service;
 
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.LanguageInfo;
+import cn.lihongjie.model.ScriptBatchItemResult;
+import cn.lihongjie.model.ScriptBatchRequest;
+import cn.lihongjie.model.ScriptDefinition;
 import cn.lihongjie.model.ScriptExecutionRequest;
 import cn.lihongjie.model.ScriptExecutionResult;
+import cn.lihongjie.model.ScriptMapReduceResult;
 import cn.lihongjie.model.ScriptPermissions;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.graalvm.polyglot.*;
 import org.graalvm.polyglot.io.IOAccess;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 @ApplicationScoped
 public class ScriptExecutionService {
     
+    @Inject
+    PolyglotEngineProvider engineProvider;
+    
+    @Inject
+    ScriptContextPool contextPool;
+    
+    @Inject
+    LanguageCatalog languageCatalog;
+    
+    @Inject
+    ScriptSourceCache sourceCache;
+    
+    @Inject
+    ExecutionWatchdog watchdog;
+    
+    @Inject
+    ScriptExecutionScheduler scheduler;
+    
+    @Inject
+    ScriptJobStore jobStore;
+    
+    @Inject
+    ScriptRegistry registry;
+    
+    @Inject
+    ScriptResultCache resultCache;
+    
+    @Inject
+    ValueConverter valueConverter;
+    
+    @ConfigProperty(name = "script.batch.max-items", defaultValue = "10000")
+    int maxBatchItems;
+    
+    @ConfigProperty(name = "script.batch.max-parallelism")
+    Optional<Integer> maxBatchParallelism;
+    
+    private final Map<String, ParallelBatch> parallelBatches = new ConcurrentHashMap<>();
+    
+    /**
+     * 进行中的可缓存执行，以结果缓存键为键；相同的请求等待并共享其结果（单飞）
+     */
+    private final Map<String, CompletableFuture<SharedExecution>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong singleFlightLeaders = new AtomicLong();
+    private final AtomicLong singleFlightFollowers = new AtomicLong();
+    private final AtomicLong singleFlightRetries = new AtomicLong();
+    
+    private static final Pattern SCRIPT_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,127}");
+    
+    /**
+     * 未授予主机访问权限时只允许脚本读写作为参数传入的缓冲区（类型化数组参数）
+     */
+    private static final HostAccess SANDBOX_HOST_ACCESS = HostAccess.newBuilder(HostAccess.NONE)
+            .allowBufferAccess(true)
+            .build();
+    
     /**
      * 获取可用的语言列表
      */
     public String[] getAvailableLanguages() {
-        try (Context context = Context.newBuilder().allowPolyglotAccess(PolyglotAccess.ALL).build()) {
-            return context.getEngine().getLanguages().keySet().toArray(new String[0]);
-        } catch (Exception e) {
-            // 如果GraalVM语言不可用，返回基本支持
-            return new String[]{"js", "python"};
-        }
+        return languageCatalog.getLanguageIds();
+    }
+    
+    /**
+     * 获取可用语言的详细信息（版本、MIME类型、别名）
+     */
+    public Collection<LanguageInfo> getLanguageDetails() {
+        return languageCatalog.getLanguages();
+    }
+    
+    /**
+     * 并行批量调用的最大分区数，未配置时为 CPU 核数
+     */
+    public int getMaxBatchParallelism() {
+        return maxBatchParallelism.filter(value -> value > 0).orElse(Runtime.getRuntime().availableProcessors());
     }
     
     /**
      * 检查指定语言是否可用
      */
     public boolean isLanguageAvailable(String language) {
-        try (Context context = Context.newBuilder().allowPolyglotAccess(PolyglotAccess.ALL).build()) {
-            return context.getEngine().getLanguages().containsKey(language);
-        } catch (Exception e) {
-            return "js".equals(language) || "python".equals(language);
-        }
+        return languageCatalog.isAvailable(language);
+    }
+    
+    /**
+     * 获取运行时统计信息
+     */
+    public Map<String, Object> getRuntimeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("contextPool", contextPool.getStats());
+        stats.put("sourceCache", sourceCache.getStats());
+        stats.put("watchdog", watchdog.getStats());
+        stats.put("scheduler", scheduler.getStats());
+        stats.put("jobs", jobStore.getStats());
+        stats.put("registry", registry.getStats());
+        stats.put("resultCache", resultCache.getStats());
+        stats.put("converter", valueConverter.getStats());
+        Map<String, Object> singleFlight = new LinkedHashMap<>();
+        singleFlight.put("inFlight", inFlight.size());
+        singleFlight.put("leaders", singleFlightLeaders.get());
+        singleFlight.put("followers", singleFlightFollowers.get());
+        singleFlight.put("retries", singleFlightRetries.get());
+        stats.put("singleFlight", singleFlight);
+        return stats;
     }
     
     /**
@@ -48,56 +160,862 @@ public class ScriptExecutionService {
     }
     
     /**
-     * 执行脚本，支持实时输出回调
+     * 执行脚本，支持实时输出回调；可缓存的请求命中结果缓存时不执行脚本，
+     * 相同的可缓存执行正在进行时等待并共享其结果
      */
     public ScriptExecutionResult executeScript(ScriptExecutionRequest request, Consumer<String> outputCallback) {
+        resolveScript(request);
+        String cacheKey = resultCache.key(request);
+        ScriptExecutionResult cached = cachedResult(cacheKey, request, outputCallback);
+        if (cached != null) {
+            return cached;
+        }
+        String executionId = assignExecutionId(request);
+        if (!watchdog.accept(executionId)) {
+            return duplicateExecutionId(executionId);
+        }
+        CompletableFuture<ScriptExecutionResult> shared = joinInFlight(cacheKey, request, outputCallback, null);
+        if (shared != null) {
+            try {
+                return shared.join();
+            } catch (CompletionException e) {
+                return asFailure(executionId, e);
+            }
+        }
+        ScriptResultCache.OutputCapture capture = captureOutput(cacheKey, outputCallback);
+        ScriptExecutionResult result = null;
+        try {
+            result = runAccepted(request, capture != null ? capture : outputCallback, scriptInvocation(request));
+            return cacheResult(cacheKey, result, capture);
+        } finally {
+            leaveInFlight(cacheKey, result, null, capture);
+        }
+    }
+    
+    /**
+     * 异步执行脚本，在专用执行线程池上运行；执行ID在提交时即受理，排队期间也可取消
+     *
+     * @return 执行结果；执行线程池饱和时以 {@link ScriptExecutionRejectedException} 异常完成
+     */
+    public CompletableFuture<ScriptExecutionResult> executeScriptAsync(ScriptExecutionRequest request, Consumer<String> outputCallback) {
+        return executeScriptAsync(request, outputCallback, null);
+    }
+    
+    /**
+     * 异步执行脚本
+     *
+     * @param onAccepted 执行ID通过重复检查、执行即将提交（此后可以取消）时调用；
+     *                   命中结果缓存、执行ID重复或复用进行中的相同执行时不调用
+     */
+    public CompletableFuture<ScriptExecutionResult> executeScriptAsync(ScriptExecutionRequest request, Consumer<String> outputCallback,
+                                                                       Runnable onAccepted) {
+        resolveScript(request);
+        String cacheKey = resultCache.key(request);
+        ScriptExecutionResult cached = cachedResult(cacheKey, request, outputCallback);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String executionId = assignExecutionId(request);
+        if (!watchdog.accept(executionId)) {
+            return CompletableFuture.completedFuture(duplicateExecutionId(executionId));
+        }
+        CompletableFuture<ScriptExecutionResult> shared = joinInFlight(cacheKey, request, outputCallback, onAccepted);
+        if (shared != null) {
+            return shared;
+        }
+        if (onAccepted != null) {
+            onAccepted.run();
+        }
+        ScriptResultCache.OutputCapture capture = captureOutput(cacheKey, outputCallback);
+        Consumer<String> callback = capture != null ? capture : outputCallback;
+        CompletableFuture<ScriptExecutionResult> future = submitAccepted(executionId, null,
+                () -> cacheResult(cacheKey, runAccepted(request, callback, scriptInvocation(request)), capture));
+        if (cacheKey != null) {
+            future.whenComplete((result, throwable) -> leaveInFlight(cacheKey, result, throwable, capture));
+        }
+        return future;
+    }
+    
+    /**
+     * 异步批量调用：脚本只执行一次，然后在同一上下文中对每组参数调用入口函数
+     *
+     * 结果的 result 为每次调用的 {@link ScriptBatchItemResult} 列表；单次调用失败只影响该项，
+     * 超时、取消等终止整个执行的错误则使整个批次失败。
+     *
+     * @return 执行结果；执行线程池饱和时以 {@link ScriptExecutionRejectedException} 异常完成
+     * @throws IllegalArgumentException 未指定入口函数、参数组为空或超过上限
+     */
+    public CompletableFuture<ScriptExecutionResult> executeBatchAsync(ScriptBatchRequest request) {
+        resolveScript(request);
+        if (request.getEntryFunction() == null || request.getEntryFunction().isBlank()) {
+            throw new IllegalArgumentException("entryFunction is required for batch invocation");
+        }
+        int items = request.getArgsList() != null ? request.getArgsList().size() : 0;
+        if (items == 0 || items > maxBatchItems) {
+            throw new IllegalArgumentException("argsList must contain 1 to " + maxBatchItems + " argument sets, got " + items);
+        }
+        String executionId = assignExecutionId(request);
+        if (!watchdog.accept(executionId)) {
+            return CompletableFuture.completedFuture(duplicateExecutionId(executionId));
+        }
+        int parallelism = Math.min(Math.min(request.getParallelism(), getMaxBatchParallelism()), items);
+        boolean reduce = request.getReduceFunction() != null && !request.getReduceFunction().isBlank();
+        if (parallelism > 1 || reduce) {
+            return executeParallelBatch(request, Math.max(1, parallelism));
+        }
+        return submitAccepted(executionId, null, () -> runAccepted(request, null,
+                (context, language, eventLoop, execution) -> invokeBatch(request, context, language, eventLoop, execution)));
+    }
+    
+    /**
+     * 并行批量调用（map-reduce）：参数组按顺序切分为多个分区，每个分区作为独立的批量执行
+     * 在各自的上下文中并行调用入口函数；指定归约函数时，全部分区成功后以所有成功结果组成的数组调用一次归约函数
+     *
+     * 分区的执行ID为 {@code <executionId>-p<序号>}，归约的执行ID为 {@code <executionId>-reduce}，取消父执行ID时一并取消。
+     */
+    private CompletableFuture<ScriptExecutionResult> executeParallelBatch(ScriptBatchRequest request, int parallelism) {
+        long startTime = System.currentTimeMillis();
+        String executionId = request.getExecutionId();
+        ParallelBatch batch = new ParallelBatch();
+        parallelBatches.put(executionId, batch);
+        
+        List<Object[]> argsList = request.getArgsList();
+        List<Integer> offsets = new ArrayList<>();
+        List<CompletableFuture<ScriptExecutionResult>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            int from = (int) ((long) argsList.size() * i / parallelism);
+            int to = (int) ((long) argsList.size() * (i + 1) / parallelism);
+            ScriptBatchRequest partition = new ScriptBatchRequest(request.getScript(), request.getLanguage(),
+                    request.getEntryFunction(), request.getPermissions(), argsList.subList(from, to));
+            partition.setStopOnError(request.isStopOnError());
+            partition.setScriptId(request.getScriptId());
+            partition.setScriptVersion(request.getScriptVersion());
+            partition.setExecutionId(executionId + "-p" + i);
+            offsets.add(from);
+            futures.add(submitPart(batch, partition, (context, language, eventLoop, execution) ->
+                    invokeBatch(partition, context, language, eventLoop, execution)));
+        }
+        
+        CompletableFuture<ScriptExecutionResult> future = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> {
+                    List<ScriptExecutionResult> parts = futures.stream().map(CompletableFuture::join).toList();
+                    ScriptExecutionResult failed = firstFailure(parts);
+                    if (failed != null) {
+                        return CompletableFuture.completedFuture(failed);
+                    }
+                    List<ScriptBatchItemResult> items = mergeItems(parts, offsets);
+                    if (request.getReduceFunction() == null || request.getReduceFunction().isBlank()) {
+                        return CompletableFuture.completedFuture(mergeParts(parts, items));
+                    }
+                    return reduce(batch, request, items).thenApply(reduced -> {
+                        List<ScriptExecutionResult> all = new ArrayList<>(parts);
+                        all.add(reduced);
+                        if (!reduced.isSuccess()) {
+                            return mergeFailure(reduced, all);
+                        }
+                        List<ScriptBatchItemResult> failures = items.stream().filter(item -> !item.isSuccess()).toList();
+                        return mergeParts(all, new ScriptMapReduceResult(reduced.getResult(), items.size(), parallelism, failures));
+                    });
+                });
+        
+        return future.whenComplete((result, throwable) -> {
+            parallelBatches.remove(executionId);
+            watchdog.forget(executionId);
+            if (throwable != null) {
+                batch.cancel(watchdog);
+            }
+        }).thenApply(result -> {
+            result.setExecutionId(executionId);
+            result.setExecutionTime(System.currentTimeMillis() - startTime);
+            return result;
+        });
+    }
+    
+    /**
+     * 提交并行批量调用的一个分区（或归约），失败时取消其他分区
+     */
+    private CompletableFuture<ScriptExecutionResult> submitPart(ParallelBatch batch, ScriptExecutionRequest part, Invocation invocation) {
+        String partId = part.getExecutionId();
+        if (batch.isCancelled()) {
+            return CompletableFuture.completedFuture(
+                    ScriptExecutionResult.failure(ExecutionStatus.CANCELLED, "Script execution was cancelled", "", 0));
+        }
+        if (!watchdog.accept(partId)) {
+            return CompletableFuture.completedFuture(duplicateExecutionId(partId));
+        }
+        batch.add(partId);
+        CompletableFuture<ScriptExecutionResult> future = submitAccepted(partId, null, () -> runAccepted(part, null, invocation));
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null || !result.isSuccess()) {
+                batch.cancel(watchdog);
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * 以所有成功调用的结果（按参数组顺序）调用一次归约函数
+     */
+    private CompletableFuture<ScriptExecutionResult> reduce(ParallelBatch batch, ScriptBatchRequest request,
+                                                            List<ScriptBatchItemResult> items) {
+        Object[] values = items.stream().filter(ScriptBatchItemResult::isSuccess).map(ScriptBatchItemResult::getResult).toArray();
+        ScriptExecutionRequest reduceRequest = new ScriptExecutionRequest(request.getScript(), request.getLanguage(),
+                request.getReduceFunction(), request.getPermissions(), null);
+        reduceRequest.setExecutionId(request.getExecutionId() + "-reduce");
+        reduceRequest.setScriptId(request.getScriptId());
+        reduceRequest.setScriptVersion(request.getScriptVersion());
+        return submitPart(batch, reduceRequest, (context, language, eventLoop, execution) -> {
+            Value result = evalEntryFunction(context, language, reduceRequest, request.getReduceFunction())
+                    .execute(toGuestValue(values));
+            if (eventLoop != null) {
+                result = eventLoop.complete(result, execution.getDeadline(), execution.getMaxExecutionTime());
+            }
+            return valueConverter.convert(result);
+        });
+    }
+    
+    /**
+     * 第一个失败的分区，优先取非取消原因（其他分区因该失败被取消）
+     */
+    private ScriptExecutionResult firstFailure(List<ScriptExecutionResult> parts) {
+        ScriptExecutionResult cancelled = null;
+        for (ScriptExecutionResult part : parts) {
+            if (part.isSuccess()) {
+                continue;
+            }
+            if (part.getStatus() != ExecutionStatus.CANCELLED) {
+                return mergeFailure(part, parts);
+            }
+            if (cancelled == null) {
+                cancelled = part;
+            }
+        }
+        return cancelled != null ? mergeFailure(cancelled, parts) : null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<ScriptBatchItemResult> mergeItems(List<ScriptExecutionResult> parts, List<Integer> offsets) {
+        List<ScriptBatchItemResult> items = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            for (ScriptBatchItemResult item : (List<ScriptBatchItemResult>) parts.get(i).getResult()) {
+                item.setIndex(item.getIndex() + offsets.get(i));
+                items.add(item);
+            }
+        }
+        return items;
+    }
+    
+    private ScriptExecutionResult mergeParts(List<ScriptExecutionResult> parts, Object result) {
+        ScriptExecutionResult merged = ScriptExecutionResult.success(result, joinOutput(parts), 0, 0);
+        accumulateUsage(merged, parts);
+        return merged;
+    }
+    
+    private ScriptExecutionResult mergeFailure(ScriptExecutionResult failed, List<ScriptExecutionResult> parts) {
+        ScriptExecutionResult merged = ScriptExecutionResult.failure(failed.getStatus(), failed.getError(), joinOutput(parts), 0);
+        accumulateUsage(merged, parts);
+        return merged;
+    }
+    
+    private String joinOutput(List<ScriptExecutionResult> parts) {
+        StringBuilder output = new StringBuilder();
+        for (ScriptExecutionResult part : parts) {
+            if (part.getOutput() != null) {
+                output.append(part.getOutput());
+            }
+        }
+        return output.toString();
+    }
+    
+    private void accumulateUsage(ScriptExecutionResult merged, List<ScriptExecutionResult> parts) {
+        for (ScriptExecutionResult part : parts) {
+            merged.setMemoryUsed(merged.getMemoryUsed() + part.getMemoryUsed());
+            merged.setCpuTime(merged.getCpuTime() + part.getCpuTime());
+            if (merged.getUnenforcedLimits() == null) {
+                merged.setUnenforcedLimits(part.getUnenforcedLimits());
+            }
+        }
+    }
+    
+    /**
+     * 将转换后的主机值包装为代理，不依赖主机访问权限即可在脚本中读取
+     */
+    private static Object toGuestValue(Object value) {
+        if (value instanceof Object[] array) {
+            Object[] elements = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                elements[i] = toGuestValue(array[i]);
+            }
+            return ProxyArray.fromArray(elements);
+        }
+        if (value instanceof List<?> list) {
+            return toGuestValue(list.toArray());
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> members = new LinkedHashMap<>();
+            map.forEach((key, member) -> members.put(String.valueOf(key), toGuestValue(member)));
+            return ProxyObject.fromMap(members);
+        }
+        if (value != null && value.getClass().isArray()) {
+            // 批量读取的类型化数组结果
+            return new TypedArrays.PrimitiveArrayProxy(value);
+        }
+        return value;
+    }
+    
+    /**
+     * 转换入口函数的参数：JSON 节点包装为按需转换的代理，Map/List 包装为代理，
+     * 基本类型数组和 ByteBuffer 批量转换为类型化数组，其余参数原样传递
+     */
+    private static Object[] toGuestArgs(Context context, String language, Object[] args) {
+        if (args == null) {
+            return new Object[0];
+        }
+        Object[] converted = args;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = toGuestArg(context, language, args[i]);
+            if (arg != args[i]) {
+                if (converted == args) {
+                    // 从 JSON 解析的参数数组的运行时类型为 JsonNode[]
+                    converted = Arrays.copyOf(args, args.length, Object[].class);
+                }
+                converted[i] = arg;
+            }
+        }
+        return converted;
+    }
+    
+    private static Object toGuestArg(Context context, String language, Object arg) {
+        if (arg instanceof JsonNode node) {
+            return JsonArgumentProxy.wrap(node, context, language);
+        }
+        if (arg instanceof Map || arg instanceof List || arg instanceof Object[]) {
+            return toGuestValue(arg);
+        }
+        return TypedArrays.toGuest(context, language, arg);
+    }
+    
+    /**
+     * 单飞执行者的结果和完整输出
+     */
+    private record SharedExecution(ScriptExecutionResult result, String output) {
+        
+        /**
+         * 为等待的请求复制结果；与实际执行一致，有输出回调时输出只通过回调转发
+         */
+        ScriptExecutionResult copyFor(String executionId, Consumer<String> outputCallback) {
+            ScriptExecutionResult copy = new ScriptExecutionResult(result.isSuccess(), result.getResult(), result.getError(),
+                    output != null ? output : "", result.getExecutionTime(), result.getMemoryUsed());
+            copy.setStatus(result.getStatus());
+            copy.setCpuTime(result.getCpuTime());
+            copy.setUnenforcedLimits(result.getUnenforcedLimits());
+            copy.setExecutionId(executionId);
+            copy.setCached(true);
+            if (outputCallback != null) {
+                if (!copy.getOutput().isEmpty()) {
+                    outputCallback.accept(copy.getOutput());
+                }
+                copy.setOutput("");
+            }
+            return copy;
+        }
+    }
+    
+    /**
+     * 正在进行的并行批量调用，记录各分区的执行ID以便整体取消
+     */
+    private static class ParallelBatch {
+        private final List<String> partIds = new CopyOnWriteArrayList<>();
+        private volatile boolean cancelled;
+        
+        void add(String partId) {
+            partIds.add(partId);
+        }
+        
+        boolean isCancelled() {
+            return cancelled;
+        }
+        
+        void cancel(ExecutionWatchdog watchdog) {
+            cancelled = true;
+            partIds.forEach(watchdog::cancel);
+        }
+    }
+    
+    /**
+     * 提交异步作业，立即返回；通过执行ID查询状态、增量输出和最终结果
+     *
+     * @throws IllegalStateException 执行ID已被占用
+     * @throws ScriptExecutionRejectedException 作业存储已满或执行线程池饱和
+     */
+    public ScriptJob submitJob(ScriptExecutionRequest request) {
+        resolveScript(request);
+        String executionId = assignExecutionId(request);
+        ScriptJob job = jobStore.create(executionId);
+        if (!watchdog.accept(executionId)) {
+            jobStore.remove(executionId);
+            throw new IllegalStateException("Execution id already in use: " + executionId);
+        }
+        
+        CompletableFuture<ScriptExecutionResult> future = submitAccepted(executionId, job::markStarted,
+                () -> runAccepted(request, job::appendOutput, scriptInvocation(request)));
+        if (future.isCompletedExceptionally()) {
+            // 提交时即被拒绝，不保留作业
+            jobStore.remove(executionId);
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        future.whenComplete((result, throwable) -> job.complete(result != null ? result : asFailure(executionId, throwable)));
+        return job;
+    }
+    
+    /**
+     * 获取异步作业，不存在或已过期时返回 null
+     */
+    public ScriptJob getJob(String executionId) {
+        return jobStore.get(executionId);
+    }
+    
+    /**
+     * 取消执行
+     *
+     * @return 是否找到该执行（正在运行或排队中）
+     */
+    public boolean cancel(String executionId) {
+        if (executionId == null) {
+            return false;
+        }
+        ParallelBatch batch = parallelBatches.get(executionId);
+        if (batch != null) {
+            batch.cancel(watchdog);
+            return true;
+        }
+        return watchdog.cancel(executionId);
+    }
+    
+    /**
+     * 正在运行的执行列表
+     */
+    public List<Map<String, Object>> getRunningExecutions() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> executions = new ArrayList<>();
+        for (RunningExecution execution : watchdog.getRunningExecutions()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("executionId", execution.getId());
+            info.put("startTime", execution.getStartTime());
+            info.put("elapsedMillis", now - execution.getStartTime());
+            info.put("maxExecutionTime", execution.getMaxExecutionTime());
+            info.put("status", execution.isRunning() ? "RUNNING" : String.valueOf(execution.getTerminationStatus()));
+            executions.add(info);
+        }
+        return executions;
+    }
+    
+    /**
+     * 在执行线程池上运行已受理执行ID的任务
+     *
+     * @param onStart 开始执行时的回调，可为 null
+     */
+    private CompletableFuture<ScriptExecutionResult> submitAccepted(String executionId, Runnable onStart,
+                                                                    Supplier<ScriptExecutionResult> task) {
+        CompletableFuture<ScriptExecutionResult> future = scheduler.submit(() -> {
+            if (onStart != null) {
+                onStart.run();
+            }
+            return task.get();
+        });
+        // 被拒绝或排队超时的任务不会运行，在此释放执行ID
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                watchdog.forget(executionId);
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * 执行已受理执行ID的脚本
+     */
+    private ScriptExecutionResult runAccepted(ScriptExecutionRequest request, Consumer<String> outputCallback, Invocation invocation) {
+        ScriptExecutionResult result = run(request, outputCallback, invocation);
+        result.setExecutionId(request.getExecutionId());
+        return result;
+    }
+    
+    /**
+     * 借出上下文、登记看门狗并在上下文中完成调用，统一处理结果、异常和上下文归还
+     */
+    private ScriptExecutionResult run(ScriptExecutionRequest request, Consumer<String> outputCallback, Invocation invocation) {
         long startTime = System.currentTimeMillis();
         
         // 使用实时输出流
         RealTimeOutputStream realTimeOutput = new RealTimeOutputStream(outputCallback);
-        PrintStream printStream = new PrintStream(realTimeOutput);
+        PrintStream printStream = new PrintStream(realTimeOutput, false, StandardCharsets.UTF_8);
+        ScriptPermissions permissions = request.getPermissions() != null ? request.getPermissions() : ScriptPermissions.createSandbox();
+        PooledContext pooledContext = null;
+        RunningExecution execution = null;
+        boolean reusable = false;
         
         try {
-            // 创建引擎配置
-            Context.Builder contextBuilder = createContextBuilder(request.getPermissions());
+            // 解析语言别名，如 javascript -> js
+            String language = languageCatalog.resolve(request.getLanguage());
             
-            // 设置输出流
-            contextBuilder.out(printStream).err(printStream);
+            // 从上下文池借出上下文，并将输出绑定到本次执行
+            pooledContext = acquireContext(language, permissions);
+            pooledContext.bindOutput(printStream);
+            Context context = pooledContext.getContext();
+            
+            // 池中的上下文保留了上次执行的语句计数，借出后重新计数
+            if (permissions.getMaxStatements() > 0) {
+                context.resetLimits();
+            }
             
-            try (Context context = contextBuilder.build()) {
-                
-                // 执行脚本
-                Value result = executeInContext(context, request);
-                
-                long executionTime = System.currentTimeMillis() - startTime;
-                String output = realTimeOutput.getFullOutput();
-                
-                // 转换结果
-                Object resultValue = convertValue(result);
-                
-                return ScriptExecutionResult.success(resultValue, output, executionTime, 0);
-                
+            // 登记到看门狗，超过最大执行时间、内存或CPU时间预算时中断上下文
+            execution = watchdog.register(request.getExecutionId(), context, startTime, permissions);
+            if (!execution.isRunning()) {
+                // 排队期间已被取消
+                throw new CancellationException(execution.getTerminationMessage());
             }
+            
+            // JavaScript 使用主机侧事件循环实现 setTimeout/setInterval
+            JavaScriptEventLoop eventLoop = null;
+            if (isJavaScript(language)) {
+                eventLoop = new JavaScriptEventLoop(context, printStream);
+                execution.setEventLoop(eventLoop);
+                eventLoop.install();
+            }
+            
+            // 执行脚本并转换结果（必须在归还上下文之前完成）
+            Object resultValue = invocation.invoke(context, language, eventLoop, execution);
+            
+            long executionTime = System.currentTimeMillis() - startTime;
+            String output = realTimeOutput.getFullOutput();
+            reusable = true;
+            
+            ScriptExecutionResult success = ScriptExecutionResult.success(resultValue, output, executionTime, 0);
+            recordUsage(success, execution);
+            return success;
         } catch (Exception e) {
+            reusable = isContextReusable(e);
             long executionTime = System.currentTimeMillis() - startTime;
             String output = realTimeOutput.getFullOutput();
             String errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
             
+            // 被看门狗终止时，中断引发的异常以终止原因为准
+            ExecutionStatus status = ExecutionStatus.ERROR;
+            if (execution != null && execution.getTerminationStatus() != null) {
+                status = execution.getTerminationStatus();
+                errorMessage = execution.getTerminationMessage();
+            } else if (e instanceof ScriptTimeoutException) {
+                status = ExecutionStatus.TIMEOUT;
+            } else if (isStatementLimitExceeded(e, permissions)) {
+                status = ExecutionStatus.STATEMENT_LIMIT;
+            }
+            
             if (outputCallback != null) {
                 outputCallback.accept("ERROR: " + errorMessage);
             }
             
-            return ScriptExecutionResult.error(errorMessage, output, executionTime);
+            ScriptExecutionResult failure = ScriptExecutionResult.failure(status, errorMessage, output, executionTime);
+            if (execution != null) {
+                recordUsage(failure, execution);
+            }
+            return failure;
         } finally {
+            // 被终止的执行需等待中断完成，且上下文不再复用
+            if (execution != null) {
+                reusable &= watchdog.complete(execution);
+            }
+            watchdog.forget(request.getExecutionId());
+            if (pooledContext != null) {
+                printStream.flush();
+                contextPool.release(pooledContext, reusable);
+            }
             printStream.close();
         }
     }
     
     /**
-     * 异步执行脚本
+     * 启动时预热常用语言的沙盒上下文，并在后台预解析持久化的已注册脚本
      */
-    public CompletableFuture<ScriptExecutionResult> executeScriptAsync(ScriptExecutionRequest request, Consumer<String> outputCallback) {
-        return CompletableFuture.supplyAsync(() -> executeScript(request, outputCallback));
+    void onStart(@Observes StartupEvent event) {
+        for (String language : contextPool.getPrewarmLanguages()) {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            if (languageCatalog.isAvailable(language)) {
+                contextPool.prewarm(ScriptContextPool.ContextKey.of(language, permissions),
+                        output -> createContext(language, permissions, output));
+            }
+        }
+        registry.warmUp(source -> validateSyntax(source.getLanguage(), source));
+    }
+    
+    /**
+     * 注册脚本的新版本：校验名称和语言，并在沙盒上下文中解析一次，语法错误时拒绝
+     *
+     * @throws IllegalArgumentException 名称、语言或脚本内容无效，或脚本存在语法错误
+     */
+    public ScriptDefinition registerScript(ScriptDefinition definition) {
+        if (definition.getName() == null || !SCRIPT_NAME.matcher(definition.getName()).matches()) {
+            throw new IllegalArgumentException("Script name must match " + SCRIPT_NAME.pattern());
+        }
+        if (definition.getScript() == null || definition.getScript().isEmpty()) {
+            throw new IllegalArgumentException("Script content is required");
+        }
+        String language = languageCatalog.resolve(definition.getLanguage());
+        if (!languageCatalog.isAvailable(language)) {
+            throw new IllegalArgumentException("Language '" + definition.getLanguage() + "' is not available");
+        }
+        definition.setLanguage(language);
+        
+        Source source = ScriptRegistry.createSource(definition);
+        validateSyntax(language, source);
+        return registry.register(definition, source);
+    }
+    
+    /**
+     * 获取已注册脚本
+     *
+     * @param version 版本号，为 null 时取最新版本
+     * @return 不存在时返回 null
+     */
+    public ScriptDefinition getRegisteredScript(String name, Integer version) {
+        ScriptRegistry.Entry entry = registry.get(name, version);
+        return entry != null ? entry.getDefinition() : null;
+    }
+    
+    /**
+     * 请求指定了 scriptId 时，用已注册脚本填充语言、脚本内容、默认入口函数和具体版本号
+     *
+     * @throws ScriptNotFoundException 脚本或指定版本不存在
+     */
+    public void resolveScript(ScriptExecutionRequest request) {
+        if (request.getScriptId() == null || request.getScriptId().isBlank()) {
+            request.setScriptId(null);
+            return;
+        }
+        ScriptRegistry.Entry entry = registry.get(request.getScriptId(), request.getScriptVersion());
+        if (entry == null) {
+            throw new ScriptNotFoundException("Script '" + request.getScriptId() + "'"
+                    + (request.getScriptVersion() != null ? " version " + request.getScriptVersion() : "") + " not found");
+        }
+        ScriptDefinition definition = entry.getDefinition();
+        request.setScriptVersion(definition.getVersion());
+        request.setLanguage(definition.getLanguage());
+        request.setScript(definition.getScript());
+        if (request.getEntryFunction() == null || request.getEntryFunction().isEmpty()) {
+            request.setEntryFunction(definition.getEntryFunction());
+        }
+        if (request.getCacheable() == null) {
+            request.setCacheable(definition.isCacheable());
+        }
+    }
+    
+    /**
+     * 在沙盒上下文中解析脚本（不执行），同时让共享 Engine 缓存解析结果
+     */
+    private void validateSyntax(String language, Source source) {
+        PooledContext pooledContext = acquireContext(language, ScriptPermissions.createSandbox());
+        boolean reusable = true;
+        try {
+            pooledContext.getContext().parse(source);
+        } catch (PolyglotException e) {
+            reusable = isContextReusable(e);
+            if (e.isSyntaxError()) {
+                throw new IllegalArgumentException("Syntax error: " + e.getMessage());
+            }
+            throw e;
+        } finally {
+            contextPool.release(pooledContext, reusable);
+        }
+    }
+    
+    /**
+     * 查找结果缓存，命中时分配执行ID并把缓存的输出交给输出回调
+     *
+     * @param cacheKey 请求不可缓存时为 null
+     */
+    private ScriptExecutionResult cachedResult(String cacheKey, ScriptExecutionRequest request, Consumer<String> outputCallback) {
+        if (cacheKey == null) {
+            return null;
+        }
+        ScriptExecutionResult cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            cached.setExecutionId(assignExecutionId(request));
+            // 与实际执行一致：有输出回调时输出只通过回调转发，不再出现在结果中
+            if (outputCallback != null) {
+                if (cached.getOutput() != null && !cached.getOutput().isEmpty()) {
+                    outputCallback.accept(cached.getOutput());
+                }
+                cached.setOutput("");
+            }
+        }
+        return cached;
+    }
+    
+    /**
+     * 相同的可缓存执行正在进行时，释放本请求的执行ID并等待共享其结果；输出在结果就绪时一次性交给输出回调。
+     * 被共享的执行被取消时重新执行，不受其他客户端取消的影响
+     *
+     * @return 共享的结果；没有进行中的相同执行（或请求不可缓存）时返回 null，可缓存的请求同时登记为执行者
+     */
+    private CompletableFuture<ScriptExecutionResult> joinInFlight(String cacheKey, ScriptExecutionRequest request,
+                                                                  Consumer<String> outputCallback, Runnable onAccepted) {
+        if (cacheKey == null) {
+            return null;
+        }
+        CompletableFuture<SharedExecution> running = inFlight.putIfAbsent(cacheKey, new CompletableFuture<>());
+        if (running == null) {
+            singleFlightLeaders.incrementAndGet();
+            return null;
+        }
+        singleFlightFollowers.incrementAndGet();
+        watchdog.forget(request.getExecutionId());
+        return running.thenCompose(shared -> {
+            if (shared.result().getStatus() == ExecutionStatus.CANCELLED) {
+                singleFlightRetries.incrementAndGet();
+                return executeScriptAsync(request, outputCallback, onAccepted);
+            }
+            return CompletableFuture.completedFuture(shared.copyFor(request.getExecutionId(), outputCallback));
+        });
+    }
+    
+    /**
+     * 执行者完成后（结果已写入缓存）移除登记，并把结果或异常交给等待的相同请求
+     */
+    private void leaveInFlight(String cacheKey, ScriptExecutionResult result, Throwable throwable,
+                               ScriptResultCache.OutputCapture capture) {
+        if (cacheKey == null) {
+            return;
+        }
+        CompletableFuture<SharedExecution> leader = inFlight.remove(cacheKey);
+        if (leader == null) {
+            return;
+        }
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+        if (cause != null) {
+            leader.completeExceptionally(cause);
+        } else if (result == null) {
+            leader.completeExceptionally(new IllegalStateException("Shared execution did not produce a result"));
+        } else {
+            String output = capture != null ? capture.getOutput() : result.getOutput();
+            leader.complete(new SharedExecution(result, output));
+        }
+    }
+    
+    /**
+     * 可缓存且有输出回调时收集实时转发的输出
+     */
+    private ScriptResultCache.OutputCapture captureOutput(String cacheKey, Consumer<String> outputCallback) {
+        return cacheKey != null && outputCallback != null ? resultCache.capture(outputCallback) : null;
+    }
+    
+    private ScriptExecutionResult cacheResult(String cacheKey, ScriptExecutionResult result, ScriptResultCache.OutputCapture capture) {
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, result, capture);
+        }
+        return result;
+    }
+    
+    /**
+     * 未指定执行ID时生成一个
+     */
+    private String assignExecutionId(ScriptExecutionRequest request) {
+        if (request.getExecutionId() == null || request.getExecutionId().isBlank()) {
+            request.setExecutionId(UUID.randomUUID().toString());
+        }
+        return request.getExecutionId();
+    }
+    
+    /**
+     * 将未运行的任务的异常（如排队超时）转换为执行结果
+     */
+    private ScriptExecutionResult asFailure(String executionId, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+        ExecutionStatus status = cause instanceof ScriptExecutionRejectedException
+                ? ExecutionStatus.REJECTED : ExecutionStatus.ERROR;
+        ScriptExecutionResult result = ScriptExecutionResult.failure(status, cause.getMessage(), "", 0);
+        result.setExecutionId(executionId);
+        return result;
+    }
+    
+    private ScriptExecutionResult duplicateExecutionId(String executionId) {
+        ScriptExecutionResult result = ScriptExecutionResult.error("Execution id already in use: " + executionId, "", 0);
+        result.setExecutionId(executionId);
+        return result;
+    }
+    
+    /**
+     * 从上下文池借出指定语言和权限的上下文
+     */
+    private PooledContext acquireContext(String language, ScriptPermissions permissions) {
+        final ScriptPermissions finalPermissions = permissions != null ? permissions : ScriptPermissions.createSandbox();
+        ScriptContextPool.ContextKey key = ScriptContextPool.ContextKey.of(language, finalPermissions);
+        ScriptContextPool.ContextCreator creator = output -> createContext(language, finalPermissions, output);
+        
+        // 未安装的语言不进入池，避免任意语言名导致池分组无限增长
+        if (!languageCatalog.isAvailable(language)) {
+            return contextPool.createTransient(key, creator);
+        }
+        return contextPool.acquire(key, creator);
+    }
+    
+    /**
+     * 创建并初始化上下文，预先完成语言初始化
+     */
+    private Context createContext(String language, ScriptPermissions permissions, OutputStream output) {
+        Context context = createContextBuilder(permissions).out(output).err(output).build();
+        try {
+            if (languageCatalog.isAvailable(language)) {
+                context.initialize(language);
+            }
+            return context;
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * 判断执行失败后上下文是否仍可复用：只有脚本自身抛出的异常才不影响上下文状态
+     */
+    private boolean isContextReusable(Exception e) {
+        return e instanceof PolyglotException polyglotException
+                && polyglotException.isGuestException()
+                && !polyglotException.isExit()
+                && !polyglotException.isInterrupted()
+                && !polyglotException.isCancelled()
+                && !polyglotException.isResourceExhausted();
+    }
+    
+    /**
+     * 记录执行线程的内存分配量、CPU时间以及未能强制的预算
+     */
+    private void recordUsage(ScriptExecutionResult result, RunningExecution execution) {
+        result.setMemoryUsed(execution.getAllocatedBytes());
+        result.setCpuTime(TimeUnit.NANOSECONDS.toMillis(execution.getCpuTimeNanos()));
+        List<String> unenforced = execution.getUnenforcedLimits();
+        if (!unenforced.isEmpty()) {
+            result.setUnenforcedLimits(unenforced);
+        }
+    }
+    
+    /**
+     * 判断异常是否由语句数限制引发：超出 ResourceLimits 时上下文被取消并标记为资源耗尽
+     */
+    private boolean isStatementLimitExceeded(Exception e, ScriptPermissions permissions) {
+        return permissions.getMaxStatements() > 0
+                && e instanceof PolyglotException polyglotException
+                && polyglotException.isCancelled()
+                && polyglotException.isResourceExhausted();
+    }
+    
+    private boolean isJavaScript(String language) {
+        return "js".equals(languageCatalog.resolve(language));
     }
     
     /**
@@ -111,7 +1029,11 @@ public class ScriptExecutionService {
                 .allowExperimentalOptions(true)  // 启用实验性选项
                 // 启用 JavaScript 基本功能
                 .option("js.console", "true");
-
+        
+        // 挂载到共享 Engine，复用已解析的 AST 和编译结果
+        if (engineProvider.isShared()) {
+            builder.engine(engineProvider.getEngine(finalPermissions));
+        }
         
         // 配置IO访问
         if (finalPermissions.isAllowIO()) {
@@ -121,10 +1043,10 @@ public class ScriptExecutionService {
         }
         
         // 配置主机访问 - 原生模块需要主机访问权限
-        if (finalPermissions.isAllowHostAccess() || finalPermissions.isAllowNetwork()) {
+        if (PolyglotEngineProvider.requiresHostAccess(finalPermissions)) {
             builder.allowHostAccess(HostAccess.ALL);
         } else {
-            builder.allowHostAccess(HostAccess.NONE);
+            builder.allowHostAccess(SANDBOX_HOST_ACCESS);
         }
         
         // 配置网络访问 - 启用主机类查找以支持网络操作
@@ -144,198 +1066,152 @@ public class ScriptExecutionService {
             builder.allowEnvironmentAccess(EnvironmentAccess.NONE);
         }
         
-        // 设置资源限制
-        if (finalPermissions.getMaxExecutionTime() > 0) {
-            // 注意：GraalVM的资源限制API可能需要额外配置
-            // 这里我们会在执行时通过超时机制来控制
+        // 设置语句数限制，超出后上下文被取消；上下文池的内部检查脚本不计数
+        if (finalPermissions.getMaxStatements() > 0) {
+            builder.resourceLimits(ResourceLimits.newBuilder()
+                    .statementLimit(finalPermissions.getMaxStatements(), source -> !source.isInternal())
+                    .build());
         }
         
         return builder;
     }
     
     /**
-     * 在上下文中执行脚本
+     * 在借出的上下文中完成一次调用，返回转换后的结果
+     */
+    @FunctionalInterface
+    private interface Invocation {
+        Object invoke(Context context, String language, JavaScriptEventLoop eventLoop, RunningExecution execution) throws Exception;
+    }
+    
+    /**
+     * 执行脚本（或调用入口函数）的调用
+     */
+    private Invocation scriptInvocation(ScriptExecutionRequest request) {
+        return (context, language, eventLoop, execution) -> {
+            Value result = executeInContext(context, language, request);
+            
+            // 主脚本结束后按顺序运行定时器回调，返回 Promise 时等待其完成
+            if (eventLoop != null) {
+                result = eventLoop.complete(result, execution.getDeadline(), execution.getMaxExecutionTime());
+            }
+            return request.isRawJsonResult() ? valueConverter.toJson(result) : valueConverter.convert(result);
+        };
+    }
+    
+    /**
+     * 批量调用：脚本执行一次后对每组参数调用入口函数，单次调用的脚本异常记录到该项结果中
      */
-    private Value executeInContext(Context context, ScriptExecutionRequest request) throws Exception {
-        // 如果是 JavaScript，先注入 setTimeout 和其他 polyfills
-        if ("js".equals(request.getLanguage()) || "javascript".equals(request.getLanguage())) {
-            injectJavaScriptPolyfills(context);
+    private List<ScriptBatchItemResult> invokeBatch(ScriptBatchRequest request, Context context, String language,
+                                                    JavaScriptEventLoop eventLoop, RunningExecution execution) {
+        Value function = evalEntryFunction(context, language, request, request.getEntryFunction());
+        if (eventLoop != null) {
+            eventLoop.run(execution.getDeadline(), execution.getMaxExecutionTime());
         }
         
+        List<Object[]> argsList = request.getArgsList();
+        List<ScriptBatchItemResult> items = new ArrayList<>(argsList.size());
+        for (int i = 0; i < argsList.size(); i++) {
+            Object[] args = toGuestArgs(context, language, argsList.get(i));
+            long itemStart = System.nanoTime();
+            ScriptBatchItemResult item;
+            try {
+                Value result = function.execute(args);
+                if (eventLoop != null) {
+                    result = eventLoop.complete(result, execution.getDeadline(), execution.getMaxExecutionTime());
+                }
+                item = ScriptBatchItemResult.success(i, valueConverter.convert(result), elapsedMicros(itemStart));
+            } catch (PolyglotException e) {
+                // 超时、取消、资源耗尽等终止整个执行的错误使整个批次失败
+                if (!isContextReusable(e) || !execution.isRunning()) {
+                    throw e;
+                }
+                item = ScriptBatchItemResult.error(i, e.getMessage(), elapsedMicros(itemStart));
+            } catch (ScriptPromiseRejectedException | IllegalArgumentException e) {
+                item = ScriptBatchItemResult.error(i, e.getMessage(), elapsedMicros(itemStart));
+            }
+            items.add(item);
+            if (!item.isSuccess() && request.isStopOnError()) {
+                break;
+            }
+        }
+        return items;
+    }
+    
+    private static long elapsedMicros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * 执行脚本并返回可执行的入口函数；JavaScript 脚本在函数作用域中执行，顶层声明不会残留在上下文中
+     */
+    private Value evalEntryFunction(Context context, String language, ScriptExecutionRequest request, String entryFunction) {
+        Value function;
+        if (ScriptSourceCache.isEntryScoped(language, entryFunction)) {
+            function = context.eval(toEntryScopedSource(language, request, entryFunction));
+        } else {
+            context.eval(toSource(language, request));
+            function = context.getBindings(language).getMember(entryFunction);
+        }
+        if (function == null || !function.canExecute()) {
+            throw new RuntimeException("Function '" + entryFunction + "' not found or not executable");
+        }
+        return function;
+    }
+    
+    /**
+     * 在上下文中执行脚本
+     */
+    private Value executeInContext(Context context, String language, ScriptExecutionRequest request) throws Exception {
         Value result;
         
         if (request.getEntryFunction() != null && !request.getEntryFunction().isEmpty()) {
-            // 先执行脚本定义函数
-            context.eval(request.getLanguage(), request.getScript());
-            
-            // 然后调用指定的入口函数
-            Value function = context.getBindings(request.getLanguage()).getMember(request.getEntryFunction());
-            if (function == null || !function.canExecute()) {
-                throw new RuntimeException("Function '" + request.getEntryFunction() + "' not found or not executable");
-            }
+            // 先执行脚本定义函数，然后调用指定的入口函数
+            Value function = evalEntryFunction(context, language, request, request.getEntryFunction());
             
-            Object[] args = request.getArgs() != null ? request.getArgs() : new Object[0];
-            result = function.execute(args);
+            result = function.execute(toGuestArgs(context, language, request.getArgs()));
         } else {
             // 直接执行脚本
-            result = context.eval(request.getLanguage(), request.getScript());
+            result = context.eval(toSource(language, request));
         }
         
         return result;
     }
     
     /**
-     * 为 JavaScript 上下文注入 polyfills
-     */
-    private void injectJavaScriptPolyfills(Context context) {
-        // 注入 setTimeout 和 clearTimeout 实现
-        // 由于沙盒限制，使用简单的忙等待实现
-        String setTimeoutPolyfill = """
-            // setTimeout and clearTimeout polyfill for GraalJS
-            (function() {
-                var timeoutId = 0;
-                var timeouts = {};
-                
-                globalThis.setTimeout = function(callback, delay) {
-                    var id = ++timeoutId;
-                    
-                    // 简单的忙等待实现 - 在沙盒环境中更安全
-                    setTimeout._busyWait(callback, delay || 0);
-                    
-                    return id;
-                };
-                
-                // 忙等待辅助函数
-                setTimeout._busyWait = function(callback, delay) {
-                    var start = Date.now();
-                    while (Date.now() - start < delay) {
-                        // Busy wait - 在小延时下是可以接受的
-                        if (Date.now() - start >= delay) {
-                            break;
-                        }
-                    }
-                    
-                    if (typeof callback === 'function') {
-                        try {
-                            callback();
-                        } catch (e) {
-                            console.error('setTimeout callback error:', e.message || e);
-                        }
-                    }
-                };
-                
-                globalThis.clearTimeout = function(timeoutId) {
-                    // 简单实现 - 由于忙等待是同步的，clearTimeout 无法真正取消
-                    if (timeouts[timeoutId]) {
-                        delete timeouts[timeoutId];
-                    }
-                };
-                
-                // 简单的 setInterval 实现 - 仅作演示，实际使用中应避免
-                globalThis.setInterval = function(callback, delay) {
-                    console.warn('setInterval in sandbox environment may cause performance issues');
-                    var intervalId = ++timeoutId;
-                    
-                    // 这是一个简化实现，实际不推荐在生产环境使用
-                    var executeInterval = function() {
-                        if (timeouts[intervalId]) {
-                            setTimeout._busyWait(function() {
-                                if (timeouts[intervalId] && typeof callback === 'function') {
-                                    try {
-                                        callback();
-                                        executeInterval(); // 递归调用
-                                    } catch (e) {
-                                        console.error('setInterval callback error:', e.message || e);
-                                        delete timeouts[intervalId];
-                                    }
-                                }
-                            }, delay || 0);
-                        }
-                    };
-                    
-                    timeouts[intervalId] = true;
-                    executeInterval();
-                    
-                    return intervalId;
-                };
-                
-                globalThis.clearInterval = function(intervalId) {
-                    if (timeouts[intervalId]) {
-                        delete timeouts[intervalId];
-                    }
-                };
-                
-                // 添加一些有用的信息
-                console.log('setTimeout polyfill loaded for GraalJS sandbox environment');
-            })();
-            """;
-        
-        try {
-            context.eval("js", setTimeoutPolyfill);
-        } catch (Exception e) {
-            // 如果上面的实现失败，使用最简单的版本
-            String fallbackSetTimeout = """
-                // Fallback setTimeout implementation
-                globalThis.setTimeout = function(callback, delay) {
-                    var start = Date.now();
-                    while (Date.now() - start < (delay || 0)) {
-                        // Busy wait
-                    }
-                    if (typeof callback === 'function') {
-                        callback();
-                    }
-                    return Math.random(); // 返回一个假的ID
-                };
-                
-                globalThis.clearTimeout = function(timeoutId) {
-                    // No-op in fallback implementation
-                };
-                
-                console.log('Fallback setTimeout implementation loaded');
-                """;
-            
-            try {
-                context.eval("js", fallbackSetTimeout);
-            } catch (Exception e2) {
-                // 如果连最简单的实现都失败，记录错误但不抛出异常
-                System.err.println("Failed to inject setTimeout polyfill: " + e2.getMessage());
+     * 获取请求对应的 Source：已注册脚本直接使用注册表持有的 Source，其余按脚本内容获取
+     */
+    private Source toSource(String language, ScriptExecutionRequest request) {
+        if (request.getScriptId() != null) {
+            ScriptRegistry.Entry entry = registry.get(request.getScriptId(), request.getScriptVersion());
+            if (entry != null) {
+                return entry.getSource();
             }
         }
+        return toSource(language, request.getScript());
     }
     
     /**
-     * 转换GraalVM Value为Java对象
+     * 获取以入口函数作用域包装的 Source，已注册脚本同样由注册表持有
      */
-    private Object convertValue(Value value) {
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        
-        if (value.isBoolean()) {
-            return value.asBoolean();
-        } else if (value.isNumber()) {
-            if (value.fitsInInt()) {
-                return value.asInt();
-            } else if (value.fitsInLong()) {
-                return value.asLong();
-            } else if (value.fitsInDouble()) {
-                return value.asDouble();
-            }
-        } else if (value.isString()) {
-            return value.asString();
-        } else if (value.hasArrayElements()) {
-            // 处理数组
-            Object[] array = new Object[(int) value.getArraySize()];
-            for (int i = 0; i < array.length; i++) {
-                array[i] = convertValue(value.getArrayElement(i));
+    private Source toEntryScopedSource(String language, ScriptExecutionRequest request, String entryFunction) {
+        if (request.getScriptId() != null) {
+            ScriptRegistry.Entry entry = registry.get(request.getScriptId(), request.getScriptVersion());
+            if (entry != null) {
+                return entry.getSource(entryFunction);
             }
-            return array;
-        } else if (value.hasMembers()) {
-            // 处理对象 - 这里简化处理，返回字符串表示
-            return value.toString();
         }
-        
-        return value.toString();
+        return toSource(language, ScriptSourceCache.entryScoped(request.getScript(), entryFunction));
+    }
+    
+    /**
+     * 获取脚本的 Source，已安装语言的脚本走缓存以复用解析和编译结果
+     */
+    private Source toSource(String language, String script) {
+        if (languageCatalog.isAvailable(language)) {
+            return sourceCache.get(language, script);
+        }
+        return Source.create(language, script);
     }
     
     /**
@@ -390,20 +1266,44 @@ public class ScriptExecutionService {
         @Override
         public void close() {
             if (!closed.getAndSet(true)) {
-                flushOutput();
+                flushOutput(true);
             }
         }
         
         private void flushOutput() {
+            flushOutput(false);
+        }
+        
+        /**
+         * 发送缓冲的输出；末尾不完整的 UTF-8 字符留到下次发送，避免多字节字符被拆开
+         */
+        private void flushOutput(boolean all) {
             if (outputCallback != null && buffer.size() > 0) {
-                String output = buffer.toString();
+                byte[] bytes = buffer.toByteArray();
+                int length = all ? bytes.length : completeUtf8Length(bytes);
+                if (length == 0) {
+                    return;
+                }
                 buffer.reset();
-                outputCallback.accept(output);
+                buffer.write(bytes, length, bytes.length - length);
+                outputCallback.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+        
+        private static int completeUtf8Length(byte[] bytes) {
+            for (int i = bytes.length - 1; i >= Math.max(0, bytes.length - 4); i--) {
+                int b = bytes[i] & 0xFF;
+                if ((b & 0xC0) == 0x80) {
+                    continue; // 后续字节，继续向前找首字节
+                }
+                int expected = b < 0x80 ? 1 : (b & 0xE0) == 0xC0 ? 2 : (b & 0xF0) == 0xE0 ? 3 : (b & 0xF8) == 0xF0 ? 4 : 1;
+                return bytes.length - i >= expected ? bytes.length : i;
             }
+            return bytes.length;
         }
         
         public String getFullOutput() {
-            return buffer.toString();
+            return buffer.toString(StandardCharsets.UTF_8);
         }
     }
 }
@@ -0,0 +1,90 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.JobState;
+import cn.lihongjie.model.ScriptExecutionResult;
+import cn.lihongjie.model.ScriptJobOutput;
+import cn.lihongjie.model.ScriptJobStatus;
+
+/**
+ * 异步作业
+ *
+ * 保存执行过程中的输出和最终结果，输出超过上限后不再保存，避免长时间运行的作业占满内存。
+ */
+public class ScriptJob {
+
+    private final String executionId;
+    private final long submittedAt = System.currentTimeMillis();
+    private final int maxOutputSize;
+    private final StringBuilder output = new StringBuilder();
+    private boolean outputTruncated;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile ScriptExecutionResult result;
+
+    ScriptJob(String executionId, int maxOutputSize) {
+        this.executionId = executionId;
+        this.maxOutputSize = maxOutputSize;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public JobState getState() {
+        if (result != null) {
+            return JobState.FINISHED;
+        }
+        return startedAt > 0 ? JobState.RUNNING : JobState.QUEUED;
+    }
+
+    /**
+     * 最终结果，未结束时为 null
+     */
+    public ScriptExecutionResult getResult() {
+        return result;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * 作业状态快照
+     */
+    public synchronized ScriptJobStatus toStatus() {
+        ScriptExecutionResult current = result;
+        return new ScriptJobStatus(executionId, getState(), current != null ? current.getStatus() : null,
+                submittedAt, startedAt, finishedAt, output.length(), outputTruncated);
+    }
+
+    /**
+     * 读取从指定位置开始的输出
+     */
+    public synchronized ScriptJobOutput readOutput(long offset) {
+        int start = (int) Math.min(Math.max(0, offset), output.length());
+        return new ScriptJobOutput(executionId, getState(), start, output.length(),
+                output.substring(start), outputTruncated);
+    }
+
+    void markStarted() {
+        startedAt = System.currentTimeMillis();
+    }
+
+    synchronized void appendOutput(String text) {
+        if (outputTruncated || text == null) {
+            return;
+        }
+        int remaining = maxOutputSize - output.length();
+        if (text.length() > remaining) {
+            output.append(text, 0, Math.max(0, remaining));
+            outputTruncated = true;
+        } else {
+            output.append(text);
+        }
+    }
+
+    void complete(ScriptExecutionResult result) {
+        finishedAt = System.currentTimeMillis();
+        this.result = result;
+    }
+}
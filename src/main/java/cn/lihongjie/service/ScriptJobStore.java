@@ -0,0 +1,112 @@
+package cn.lihongjie.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 异步作业存储
+ *
+ * 作业按提交顺序保存在内存中，结束超过保留时间后淘汰；作业数达到上限时先淘汰最早结束的作业，
+ * 全部作业都未结束时拒绝新作业。
+ */
+@ApplicationScoped
+public class ScriptJobStore {
+
+    @ConfigProperty(name = "script.jobs.max-jobs", defaultValue = "1000")
+    int maxJobs;
+
+    @ConfigProperty(name = "script.jobs.ttl", defaultValue = "10m")
+    Duration ttl;
+
+    @ConfigProperty(name = "script.jobs.max-output-size", defaultValue = "1048576")
+    int maxOutputSize;
+
+    private final LinkedHashMap<String, ScriptJob> jobs = new LinkedHashMap<>();
+    private long created;
+    private long expired;
+    private long evicted;
+
+    /**
+     * 创建作业
+     *
+     * @throws IllegalStateException 执行ID已被其他作业占用
+     * @throws ScriptExecutionRejectedException 作业数已达上限且没有可淘汰的已结束作业
+     */
+    public synchronized ScriptJob create(String executionId) {
+        purgeExpired(System.currentTimeMillis());
+        if (jobs.containsKey(executionId)) {
+            throw new IllegalStateException("Execution id already in use: " + executionId);
+        }
+        if (jobs.size() >= maxJobs && !evictOldestFinished()) {
+            throw new ScriptExecutionRejectedException("Job store is full: " + maxJobs + " unfinished jobs");
+        }
+        ScriptJob job = new ScriptJob(executionId, maxOutputSize);
+        jobs.put(executionId, job);
+        created++;
+        return job;
+    }
+
+    /**
+     * 获取作业，不存在或已过期时返回 null
+     */
+    public synchronized ScriptJob get(String executionId) {
+        ScriptJob job = jobs.get(executionId);
+        if (job != null && isExpired(job, System.currentTimeMillis())) {
+            jobs.remove(executionId);
+            expired++;
+            return null;
+        }
+        return job;
+    }
+
+    public synchronized void remove(String executionId) {
+        jobs.remove(executionId);
+    }
+
+    /**
+     * 作业存储统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        purgeExpired(System.currentTimeMillis());
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", jobs.size());
+        stats.put("maxJobs", maxJobs);
+        stats.put("ttlSeconds", ttl.toSeconds());
+        stats.put("created", created);
+        stats.put("expired", expired);
+        stats.put("evicted", evicted);
+        return stats;
+    }
+
+    private boolean isExpired(ScriptJob job, long now) {
+        long finishedAt = job.getFinishedAt();
+        return finishedAt > 0 && now - finishedAt > ttl.toMillis();
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<ScriptJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+                expired++;
+            }
+        }
+    }
+
+    private boolean evictOldestFinished() {
+        Iterator<ScriptJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getFinishedAt() > 0) {
+                iterator.remove();
+                evicted++;
+                return true;
+            }
+        }
+        return false;
+    }
+}
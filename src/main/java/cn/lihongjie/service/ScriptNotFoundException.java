@@ -0,0 +1,13 @@
+package cn.lihongjie.service;
+
+/**
+ * 请求的已注册脚本（或指定版本）不存在
+ */
+public class ScriptNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ScriptNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package cn.lihongjie.service;
+
+/**
+ * 脚本返回的 Promise 被拒绝或始终未完成
+ */
+public class ScriptPromiseRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ScriptPromiseRejectedException(String message) {
+        super(message);
+    }
+}
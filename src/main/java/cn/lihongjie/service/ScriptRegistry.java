@@ -0,0 +1,420 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ScriptDefinition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Source;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 已注册脚本
+ *
+ * 按名称和版本保存脚本及其 {@link Source}。Source 由注册表持有，不受 {@link ScriptSourceCache} 淘汰影响，
+ * 按 scriptId 执行时无需传输、哈希和重新解析脚本内容。每个名称只保留最近的若干个版本。
+ *
+ * 配置了存储目录时，变更写入 {@link ScriptRegistryStore} 的追加日志并定期写检查点索引；
+ * 启动时只加载索引中的元数据，脚本内容和 Source 在首次使用或后台预热时才加载。
+ */
+@ApplicationScoped
+public class ScriptRegistry {
+
+    private static final Logger LOG = Logger.getLogger(ScriptRegistry.class);
+
+    @ConfigProperty(name = "script.registry.max-versions", defaultValue = "10")
+    int maxVersions;
+
+    @ConfigProperty(name = "script.registry.dir")
+    Optional<String> directory;
+
+    @ConfigProperty(name = "script.registry.checkpoint-interval", defaultValue = "1000")
+    int checkpointInterval;
+
+    @ConfigProperty(name = "script.registry.warm-up", defaultValue = "true")
+    boolean warmUpEnabled;
+
+    private final Map<String, NavigableMap<Integer, Entry>> scripts = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong warmedUp = new AtomicLong();
+    private final AtomicLong warmUpFailures = new AtomicLong();
+    private ScriptRegistryStore store;
+    private double loadMillis;
+    private volatile boolean closed;
+    private volatile Thread warmUpThread;
+
+    @PostConstruct
+    void init() {
+        if (directory.isEmpty() || directory.get().isBlank()) {
+            return;
+        }
+        long start = System.nanoTime();
+        store = new ScriptRegistryStore(Path.of(directory.get()));
+        try {
+            List<ScriptRegistryStore.StoredScript> stored = store.open(maxVersions);
+            for (ScriptRegistryStore.StoredScript script : stored) {
+                put(new Entry(script, store));
+            }
+            long replayed = store.getPendingRecords();
+            if (replayed > 0) {
+                checkpoint();
+            }
+            loadMillis = (System.nanoTime() - start) / 1_000_000.0;
+            LOG.infof("Loaded %d registered script versions from %s in %.1f ms (%d log records replayed)",
+                    stored.size(), store.getDirectory(), loadMillis, replayed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open script registry at " + directory.get(), e);
+        }
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        if (store == null) {
+            return;
+        }
+        // 压缩会替换日志文件，先停止后台预热
+        closed = true;
+        Thread warmUp = warmUpThread;
+        if (warmUp != null) {
+            try {
+                warmUp.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            store.compactAndClose(storedScripts());
+        } catch (IOException e) {
+            LOG.warnf("Failed to checkpoint script registry: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 为脚本创建 Source
+     */
+    public static Source createSource(ScriptDefinition definition) {
+        return createSource(definition, definition.getScript());
+    }
+
+    private static Source createSource(ScriptDefinition definition, String script) {
+        String extension = switch (definition.getLanguage()) {
+            case "js" -> ".js";
+            case "python" -> ".py";
+            default -> "";
+        };
+        return Source.newBuilder(definition.getLanguage(), script, definition.getName() + extension)
+                .cached(true)
+                .buildLiteral();
+    }
+
+    public boolean contains(String name) {
+        return scripts.containsKey(name);
+    }
+
+    /**
+     * 以下一个版本号登记脚本，超出保留数量的旧版本被移除
+     *
+     * @return 登记后的脚本（带版本号、哈希和注册时间）
+     */
+    public synchronized ScriptDefinition register(ScriptDefinition definition, Source source) {
+        NavigableMap<Integer, Entry> versions = scripts.get(definition.getName());
+        int version = versions == null || versions.isEmpty() ? 1 : versions.lastKey() + 1;
+        ScriptDefinition registered = new ScriptDefinition(definition.getName(), version, definition.getLanguage(),
+                definition.getScript(), definition.getEntryFunction(), definition.getDescription(),
+                ScriptSourceCache.hash(definition.getLanguage(), definition.getScript()), System.currentTimeMillis());
+        registered.setCacheable(definition.isCacheable());
+        if (store == null) {
+            put(new Entry(registered, source));
+            return registered;
+        }
+        try {
+            ScriptRegistryStore.StoredScript stored = store.append(registered);
+            Entry entry = new Entry(stored, store);
+            entry.source = source;
+            put(entry);
+            maybeCheckpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist script '" + registered.getName() + "'", e);
+        }
+        return registered;
+    }
+
+    /**
+     * 登记一个版本，已存在时替换
+     */
+    private void put(Entry entry) {
+        ScriptDefinition definition = entry.getMetadata();
+        NavigableMap<Integer, Entry> versions = new TreeMap<>(scripts.getOrDefault(definition.getName(), new TreeMap<>()));
+        versions.put(definition.getVersion(), entry);
+        while (versions.size() > Math.max(1, maxVersions)) {
+            versions.pollFirstEntry();
+        }
+        // 写时复制，读取无需加锁
+        scripts.put(definition.getName(), versions);
+    }
+
+    /**
+     * 获取脚本
+     *
+     * @param version 版本号，为 null 时取最新版本
+     * @return 不存在时返回 null
+     */
+    public Entry get(String name, Integer version) {
+        lookups.incrementAndGet();
+        NavigableMap<Integer, Entry> versions = scripts.get(name);
+        Entry entry = null;
+        if (versions != null && !versions.isEmpty()) {
+            entry = version == null ? versions.lastEntry().getValue() : versions.get(version);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 所有脚本的最新版本（不含脚本内容）
+     */
+    public List<ScriptDefinition> list() {
+        List<ScriptDefinition> latest = new ArrayList<>();
+        for (NavigableMap<Integer, Entry> versions : scripts.values()) {
+            if (!versions.isEmpty()) {
+                latest.add(versions.lastEntry().getValue().getMetadata());
+            }
+        }
+        latest.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return latest;
+    }
+
+    /**
+     * 指定脚本的所有版本（不含脚本内容），不存在时返回空列表
+     */
+    public List<ScriptDefinition> versions(String name) {
+        List<ScriptDefinition> result = new ArrayList<>();
+        for (Entry entry : scripts.getOrDefault(name, new TreeMap<>()).values()) {
+            result.add(entry.getMetadata());
+        }
+        return result;
+    }
+
+    /**
+     * 删除脚本的所有版本
+     */
+    public synchronized boolean remove(String name) {
+        if (!scripts.containsKey(name)) {
+            return false;
+        }
+        persistRemoval(name, null);
+        scripts.remove(name);
+        return true;
+    }
+
+    /**
+     * 删除脚本的指定版本
+     */
+    public synchronized boolean remove(String name, int version) {
+        NavigableMap<Integer, Entry> versions = scripts.get(name);
+        if (versions == null || !versions.containsKey(version)) {
+            return false;
+        }
+        persistRemoval(name, version);
+        NavigableMap<Integer, Entry> remaining = new TreeMap<>(versions);
+        remaining.remove(version);
+        if (remaining.isEmpty()) {
+            scripts.remove(name);
+        } else {
+            scripts.put(name, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 在后台线程中按名称依次加载各脚本的最新版本并交给 parser 预解析，不阻塞启动和请求
+     */
+    public void warmUp(Consumer<Source> parser) {
+        if (!warmUpEnabled || store == null || scripts.isEmpty()) {
+            return;
+        }
+        warmUpThread = Thread.ofPlatform().daemon().name("script-registry-warm-up").start(() -> {
+            long start = System.nanoTime();
+            for (ScriptDefinition latest : list()) {
+                if (closed) {
+                    break;
+                }
+                Entry entry = get(latest.getName(), latest.getVersion());
+                if (entry == null || entry.isLoaded()) {
+                    continue;
+                }
+                try {
+                    parser.accept(ScriptSourceCache.isEntryScoped(latest.getLanguage(), latest.getEntryFunction())
+                            ? entry.getSource(latest.getEntryFunction()) : entry.getSource());
+                    warmedUp.incrementAndGet();
+                } catch (RuntimeException e) {
+                    warmUpFailures.incrementAndGet();
+                    LOG.debugf("Failed to warm up registered script '%s': %s", latest.getName(), e.getMessage());
+                }
+            }
+            LOG.infof("Warmed up %d registered scripts in %d ms", warmedUp.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * 注册表统计信息
+     */
+    public Map<String, Object> getStats() {
+        int versionCount = 0;
+        int loaded = 0;
+        for (NavigableMap<Integer, Entry> versions : scripts.values()) {
+            versionCount += versions.size();
+            for (Entry entry : versions.values()) {
+                if (entry.isLoaded()) {
+                    loaded++;
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scripts", scripts.size());
+        stats.put("versions", versionCount);
+        stats.put("loaded", loaded);
+        stats.put("maxVersions", maxVersions);
+        stats.put("lookups", lookups.get());
+        stats.put("misses", misses.get());
+        stats.put("persistent", store != null);
+        if (store != null) {
+            stats.put("loadMillis", loadMillis);
+            stats.put("warmedUp", warmedUp.get());
+            stats.put("warmUpFailures", warmUpFailures.get());
+            stats.put("store", store.getStats());
+        }
+        return stats;
+    }
+
+    private void persistRemoval(String name, Integer version) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.appendRemove(name, version);
+            maybeCheckpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist removal of script '" + name + "'", e);
+        }
+    }
+
+    private void maybeCheckpoint() throws IOException {
+        if (store.getPendingRecords() >= Math.max(1, checkpointInterval)) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() throws IOException {
+        store.checkpoint(storedScripts());
+    }
+
+    private List<ScriptRegistryStore.StoredScript> storedScripts() {
+        List<ScriptRegistryStore.StoredScript> stored = new ArrayList<>();
+        for (NavigableMap<Integer, Entry> versions : scripts.values()) {
+            for (Entry entry : versions.values()) {
+                stored.add(new ScriptRegistryStore.StoredScript(entry.metadata, entry.offset, entry.length));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 注册表中的一个脚本版本；从存储加载的版本在首次访问时才读取脚本内容并创建 Source
+     */
+    public static class Entry {
+        private final ScriptDefinition metadata;
+        private final ScriptRegistryStore store;
+        private final long offset;
+        private final int length;
+        private volatile ScriptDefinition definition;
+        private volatile Source source;
+        private final Map<String, Source> scopedSources = new ConcurrentHashMap<>();
+
+        Entry(ScriptDefinition definition, Source source) {
+            this.metadata = definition.withoutScript();
+            this.store = null;
+            this.offset = -1;
+            this.length = 0;
+            this.definition = definition;
+            this.source = source;
+        }
+
+        Entry(ScriptRegistryStore.StoredScript stored, ScriptRegistryStore store) {
+            this.metadata = stored.definition().getScript() == null ? stored.definition() : stored.definition().withoutScript();
+            this.store = store;
+            this.offset = stored.offset();
+            this.length = stored.length();
+            // 重放日志尾部得到的版本已带脚本内容
+            this.definition = stored.definition().getScript() != null ? stored.definition() : null;
+        }
+
+        /**
+         * 不含脚本内容的元数据
+         */
+        public ScriptDefinition getMetadata() {
+            return metadata;
+        }
+
+        public ScriptDefinition getDefinition() {
+            ScriptDefinition loaded = definition;
+            if (loaded == null) {
+                synchronized (this) {
+                    loaded = definition;
+                    if (loaded == null) {
+                        loaded = store.load(offset, length);
+                        definition = loaded;
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        public Source getSource() {
+            Source loaded = source;
+            if (loaded == null) {
+                synchronized (this) {
+                    loaded = source;
+                    if (loaded == null) {
+                        loaded = createSource(getDefinition());
+                        source = loaded;
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        /**
+         * 以入口函数作用域包装的 Source，见 {@link ScriptSourceCache#isEntryScoped}
+         */
+        public Source getSource(String entryFunction) {
+            return scopedSources.computeIfAbsent(entryFunction, function -> {
+                ScriptDefinition loaded = getDefinition();
+                return createSource(loaded, ScriptSourceCache.entryScoped(loaded.getScript(), function));
+            });
+        }
+
+        boolean isLoaded() {
+            return source != null || !scopedSources.isEmpty();
+        }
+    }
+}
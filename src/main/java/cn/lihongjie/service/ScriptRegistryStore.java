@@ -0,0 +1,478 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ScriptDefinition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 脚本注册表的磁盘存储
+ *
+ * 目录下有两个文件：
+ * scripts.log 只追加的变更日志，每条记录为 [负载长度][类型][CRC32][JSON 负载]；
+ * scripts.idx 检查点索引，保存检查点时所有存活版本的元数据和对应 PUT 记录在日志中的位置。
+ *
+ * 启动时内存映射读取索引，只重放索引之后追加的日志尾部，不扫描和解析整个日志；
+ * 索引中的版本只有元数据，脚本内容在首次使用时按位置从日志读取。
+ * 索引缺失、损坏或与日志代次不符时退化为完整重放；日志末尾写了一半的记录会被截断。
+ * 被覆盖和删除的记录在关闭时若超过存活记录的大小则压缩日志。
+ */
+class ScriptRegistryStore implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ScriptRegistryStore.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final String LOG_FILE = "scripts.log";
+    static final String INDEX_FILE = "scripts.idx";
+
+    private static final int LOG_MAGIC = 0x53524C47; // "SRLG"
+    private static final int INDEX_MAGIC = 0x53524958; // "SRIX"
+    private static final int LOG_FORMAT_VERSION = 1;
+    private static final int INDEX_FORMAT_VERSION = 2;
+    private static final int LOG_HEADER_SIZE = 16; // magic + 格式版本 + 代次
+    private static final int RECORD_HEADER_SIZE = 9; // 负载长度 + 类型 + CRC32
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * 一个存活的脚本版本及其 PUT 记录在日志中的位置；从索引加载时 definition 不含脚本内容
+     */
+    record StoredScript(ScriptDefinition definition, long offset, int length) {
+    }
+
+    private final Path directory;
+    private final Path logPath;
+    private final Path indexPath;
+    private volatile FileChannel log;
+    private long generation;
+    private long logLength;
+    private long pendingRecords;
+    private long replayedRecords;
+    private long checkpoints;
+    private long compactions;
+
+    ScriptRegistryStore(Path directory) {
+        this.directory = directory;
+        this.logPath = directory.resolve(LOG_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 打开存储并恢复所有存活版本（按名称和版本排序）
+     *
+     * @param maxVersions 每个脚本保留的最多版本数，重放时与注册时一样淘汰旧版本
+     */
+    synchronized List<StoredScript> open(int maxVersions) throws IOException {
+        Files.createDirectories(directory);
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = log.size();
+        if (size < LOG_HEADER_SIZE) {
+            generation = ThreadLocalRandom.current().nextLong();
+            writeLogHeader(log, generation);
+            log.truncate(LOG_HEADER_SIZE);
+            log.force(true);
+            logLength = LOG_HEADER_SIZE;
+            return List.of();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != LOG_MAGIC || header.getInt() != LOG_FORMAT_VERSION) {
+            throw new IOException("Not a script registry log: " + logPath);
+        }
+        generation = header.getLong();
+
+        Map<String, NavigableMap<Integer, StoredScript>> state = new TreeMap<>();
+        long position = readIndex(state, size);
+        if (position < 0) {
+            state.clear();
+            position = LOG_HEADER_SIZE;
+        }
+        while (position < size) {
+            long next = replay(state, position, size, Math.max(1, maxVersions));
+            if (next < 0) {
+                LOG.warnf("Truncating incomplete or corrupt script registry log record at offset %d of %s", position, logPath);
+                log.truncate(position);
+                log.force(true);
+                break;
+            }
+            position = next;
+            replayedRecords++;
+            pendingRecords++;
+        }
+        logLength = position;
+
+        List<StoredScript> scripts = new ArrayList<>();
+        for (NavigableMap<Integer, StoredScript> versions : state.values()) {
+            scripts.addAll(versions.values());
+        }
+        return scripts;
+    }
+
+    /**
+     * 追加 PUT 记录
+     *
+     * @return 记录在日志中的位置
+     */
+    synchronized StoredScript append(ScriptDefinition definition) throws IOException {
+        long offset = logLength;
+        int length = appendRecord(PUT, MAPPER.writeValueAsBytes(definition));
+        return new StoredScript(definition, offset, length);
+    }
+
+    /**
+     * 追加删除记录
+     *
+     * @param version 版本号，为 null 时删除脚本的所有版本
+     */
+    synchronized void appendRemove(String name, Integer version) throws IOException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("name", name);
+        payload.put("version", version);
+        appendRecord(REMOVE, MAPPER.writeValueAsBytes(payload));
+    }
+
+    /**
+     * 从日志读取完整的脚本定义；与压缩和关闭互斥，读取期间日志文件不会被替换
+     */
+    synchronized ScriptDefinition load(long offset, int length) {
+        try {
+            if (log == null) {
+                throw new IOException("Script registry store is closed");
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(record, offset);
+            record.flip();
+            int payloadLength = record.getInt();
+            byte type = record.get();
+            int crc = record.getInt();
+            if (type != PUT || payloadLength != length - RECORD_HEADER_SIZE || crc != crc(type, record.duplicate())) {
+                throw new IOException("Corrupt script registry record at offset " + offset);
+            }
+            return MAPPER.readValue(record.array(), RECORD_HEADER_SIZE, payloadLength, ScriptDefinition.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load registered script from " + logPath, e);
+        }
+    }
+
+    /**
+     * 上次写索引后追加（或启动时重放）的记录数
+     */
+    synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    /**
+     * 以当前日志长度写入检查点索引（先写临时文件再原子替换）
+     *
+     * @param live 所有存活版本
+     */
+    synchronized void checkpoint(Collection<StoredScript> live) throws IOException {
+        writeIndex(live, generation, logLength);
+        pendingRecords = 0;
+        checkpoints++;
+    }
+
+    /**
+     * 被覆盖和删除的记录超过存活记录时，只复制存活记录重写日志，然后写入新索引
+     */
+    synchronized void compactIfNeeded(Collection<StoredScript> live) throws IOException {
+        long liveBytes = 0;
+        for (StoredScript script : live) {
+            liveBytes += script.length();
+        }
+        long deadBytes = logLength - LOG_HEADER_SIZE - liveBytes;
+        if (deadBytes <= liveBytes) {
+            checkpoint(live);
+            return;
+        }
+
+        long newGeneration = ThreadLocalRandom.current().nextLong();
+        Path compactedPath = directory.resolve(LOG_FILE + ".tmp");
+        List<StoredScript> relocated = new ArrayList<>(live.size());
+        long position = LOG_HEADER_SIZE;
+        try (FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeLogHeader(compacted, newGeneration);
+            compacted.position(LOG_HEADER_SIZE);
+            for (StoredScript script : live) {
+                long copied = 0;
+                while (copied < script.length()) {
+                    copied += log.transferTo(script.offset() + copied, script.length() - copied, compacted);
+                }
+                relocated.add(new StoredScript(script.definition(), position, script.length()));
+                position += script.length();
+            }
+            compacted.force(true);
+        }
+        // 新日志和新索引的代次一致；两次替换之间崩溃时索引与日志代次不符，启动时完整重放
+        Files.move(compactedPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.close();
+        log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        generation = newGeneration;
+        logLength = position;
+        compactions++;
+        LOG.infof("Compacted script registry log %s, reclaimed %d bytes", logPath, deadBytes);
+        checkpoint(relocated);
+    }
+
+    /**
+     * 按需压缩后关闭；整个过程持有锁，读取不会落在压缩后（偏移已变化）、关闭前的日志上
+     */
+    synchronized void compactAndClose(Collection<StoredScript> live) throws IOException {
+        try {
+            compactIfNeeded(live);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("directory", directory.toString());
+        stats.put("logBytes", logLength);
+        stats.put("replayedRecords", replayedRecords);
+        stats.put("pendingRecords", pendingRecords);
+        stats.put("checkpoints", checkpoints);
+        stats.put("compactions", compactions);
+        return stats;
+    }
+
+    private int appendRecord(byte type, byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("Script registry record too large: " + payload.length + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.put(type);
+        record.putInt(crc(type, ByteBuffer.wrap(payload)));
+        record.put(payload);
+        record.flip();
+        long position = logLength;
+        while (record.hasRemaining()) {
+            position += log.write(record, position);
+        }
+        log.force(false);
+        logLength = position;
+        pendingRecords++;
+        return record.capacity();
+    }
+
+    /**
+     * 重放一条记录
+     *
+     * @return 下一条记录的位置；记录不完整或校验失败时返回 -1
+     */
+    private long replay(Map<String, NavigableMap<Integer, StoredScript>> state, long position, long size,
+                        int maxVersions) throws IOException {
+        if (size - position < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(header, position);
+        header.flip();
+        int payloadLength = header.getInt();
+        byte type = header.get();
+        int crc = header.getInt();
+        if (payloadLength < 0 || payloadLength > MAX_RECORD_SIZE || size - position - RECORD_HEADER_SIZE < payloadLength) {
+            return -1;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        readFully(payload, position + RECORD_HEADER_SIZE);
+        payload.flip();
+        if (crc != crc(type, payload.duplicate())) {
+            return -1;
+        }
+
+        if (type == PUT) {
+            ScriptDefinition definition = MAPPER.readValue(payload.array(), ScriptDefinition.class);
+            NavigableMap<Integer, StoredScript> versions = state.computeIfAbsent(definition.getName(), name -> new TreeMap<>());
+            versions.put(definition.getVersion(), new StoredScript(definition, position, RECORD_HEADER_SIZE + payloadLength));
+            while (versions.size() > maxVersions) {
+                versions.pollFirstEntry();
+            }
+        } else if (type == REMOVE) {
+            Map<?, ?> removal = MAPPER.readValue(payload.array(), Map.class);
+            String name = (String) removal.get("name");
+            Object version = removal.get("version");
+            NavigableMap<Integer, StoredScript> versions = state.get(name);
+            if (version == null) {
+                state.remove(name);
+            } else if (versions != null) {
+                versions.remove(((Number) version).intValue());
+                if (versions.isEmpty()) {
+                    state.remove(name);
+                }
+            }
+        } else {
+            return -1;
+        }
+        return position + RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    /**
+     * 内存映射读取索引
+     *
+     * @return 索引覆盖到的日志位置，需要从这里开始重放；索引缺失或不可用时返回 -1
+     */
+    private long readIndex(Map<String, NavigableMap<Integer, StoredScript>> state, long logSize) {
+        if (!Files.exists(indexPath)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 32 || size > Integer.MAX_VALUE) {
+                return invalidIndex("unexpected size " + size);
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(index.slice(0, (int) size - 4));
+            if ((int) crc.getValue() != index.getInt((int) size - 4)) {
+                return invalidIndex("checksum mismatch");
+            }
+            if (index.getInt() != INDEX_MAGIC || index.getInt() != INDEX_FORMAT_VERSION || index.getLong() != generation) {
+                return invalidIndex("written for a different log");
+            }
+            long indexedLength = index.getLong();
+            int count = index.getInt();
+            if (indexedLength < LOG_HEADER_SIZE || indexedLength > logSize) {
+                return invalidIndex("covers " + indexedLength + " bytes of a " + logSize + " byte log");
+            }
+            for (int i = 0; i < count; i++) {
+                String name = readString(index);
+                int version = index.getInt();
+                long offset = index.getLong();
+                int length = index.getInt();
+                long createdAt = index.getLong();
+                boolean cacheable = index.get() != 0;
+                ScriptDefinition definition = new ScriptDefinition(name, version, readString(index), null,
+                        readString(index), readString(index), readString(index), createdAt);
+                definition.setCacheable(cacheable);
+                state.computeIfAbsent(name, key -> new TreeMap<>()).put(version, new StoredScript(definition, offset, length));
+            }
+            return indexedLength;
+        } catch (IOException | RuntimeException e) {
+            return invalidIndex(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private long invalidIndex(String reason) {
+        LOG.warnf("Ignoring script registry index %s (%s), replaying the full log", indexPath, reason);
+        return -1;
+    }
+
+    private void writeIndex(Collection<StoredScript> live, long indexGeneration, long indexedLength) throws IOException {
+        Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), crc));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_FORMAT_VERSION);
+            out.writeLong(indexGeneration);
+            out.writeLong(indexedLength);
+            out.writeInt(live.size());
+            for (StoredScript script : live) {
+                ScriptDefinition definition = script.definition();
+                writeString(out, definition.getName());
+                out.writeInt(definition.getVersion());
+                out.writeLong(script.offset());
+                out.writeInt(script.length());
+                out.writeLong(definition.getCreatedAt());
+                out.writeBoolean(definition.isCacheable());
+                writeString(out, definition.getLanguage());
+                writeString(out, definition.getEntryFunction());
+                writeString(out, definition.getDescription());
+                writeString(out, definition.getHash());
+            }
+            out.flush();
+            // 校验和本身不计入校验范围
+            new DataOutputStream(Channels.newOutputStream(channel)).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of script registry log " + logPath);
+            }
+        }
+    }
+
+    private static void writeLogHeader(FileChannel channel, long logGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putInt(LOG_FORMAT_VERSION).putLong(logGeneration).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static int crc(byte type, ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
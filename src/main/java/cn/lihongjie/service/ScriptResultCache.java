@@ -0,0 +1,233 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.ScriptExecutionRequest;
+import cn.lihongjie.model.ScriptExecutionResult;
+import cn.lihongjie.model.ScriptPermissions;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 执行结果缓存
+ *
+ * 标记为可缓存（纯函数）的执行以语言、脚本内容、入口函数、参数和权限的哈希为键缓存成功结果，
+ * 命中时直接返回缓存结果，不获取上下文也不执行脚本。条目在 TTL 后过期，
+ * 条目数或估算的总字节数超出上限时淘汰最久未使用的条目。
+ */
+@ApplicationScoped
+public class ScriptResultCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @ConfigProperty(name = "script.result-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "script.result-cache.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    @ConfigProperty(name = "script.result-cache.max-bytes", defaultValue = "67108864")
+    long maxBytes;
+
+    @ConfigProperty(name = "script.result-cache.ttl", defaultValue = "5m")
+    Duration ttl;
+
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+    private long expirations;
+    private long rejected;
+
+    /**
+     * 计算请求的缓存键（结果形式不同的请求不共享缓存）
+     *
+     * @return 请求未标记为可缓存、缓存未启用或参数无法序列化时返回 null
+     */
+    public String key(ScriptExecutionRequest request) {
+        if (!enabled || !Boolean.TRUE.equals(request.getCacheable()) || request.getScript() == null) {
+            return null;
+        }
+        ScriptPermissions permissions = request.getPermissions() != null ? request.getPermissions() : ScriptPermissions.createSandbox();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, request.getLanguage());
+            update(digest, request.getScript());
+            update(digest, request.getEntryFunction());
+            update(digest, MAPPER.writeValueAsString(request.getArgs()));
+            update(digest, MAPPER.writeValueAsString(permissions));
+            update(digest, String.valueOf(request.isRawJsonResult()));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查找缓存结果
+     *
+     * @return 缓存结果的副本（cached 为 true，执行耗时为 0），未命中或已过期时返回 null
+     */
+    public ScriptExecutionResult get(String key) {
+        long now = System.nanoTime();
+        CachedResult cached;
+        synchronized (this) {
+            cached = results.get(key);
+            if (cached != null && now - cached.expiresAt >= 0) {
+                remove(key);
+                expirations++;
+                cached = null;
+            }
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        ScriptExecutionResult copy = ScriptExecutionResult.success(cached.result, cached.output, 0, 0);
+        copy.setCached(true);
+        return copy;
+    }
+
+    /**
+     * 包装输出回调，在转发的同时收集输出；实时转发的输出不会出现在执行结果中，缓存时使用收集到的输出
+     */
+    public OutputCapture capture(Consumer<String> outputCallback) {
+        return new OutputCapture(outputCallback, maxBytes / 2);
+    }
+
+    /**
+     * 缓存成功的执行结果；结果无法序列化为 JSON 或单个结果超过总字节上限时不缓存
+     *
+     * @param capture 执行时使用的输出收集器，没有输出回调时为 null
+     */
+    public void put(String key, ScriptExecutionResult result, OutputCapture capture) {
+        String output = capture != null ? capture.getOutput() : result.getOutput();
+        if (result.getStatus() != ExecutionStatus.SUCCESS || (capture != null && output == null)) {
+            return;
+        }
+        long weight;
+        try {
+            weight = key.length() + MAPPER.writeValueAsBytes(result.getResult()).length
+                    + (output != null ? 2L * output.length() : 0);
+        } catch (JsonProcessingException e) {
+            synchronized (this) {
+                rejected++;
+            }
+            return;
+        }
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        synchronized (this) {
+            if (weight > maxBytes) {
+                rejected++;
+                return;
+            }
+            remove(key);
+            results.put(key, new CachedResult(result.getResult(), output, weight, expiresAt));
+            bytes += weight;
+            puts++;
+            Iterator<Map.Entry<String, CachedResult>> eldest = results.entrySet().iterator();
+            while ((results.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        long lookups = hits + misses;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", results.size());
+        stats.put("bytes", bytes);
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("ttlSeconds", ttl.toSeconds());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("puts", puts);
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        stats.put("rejected", rejected);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    private void remove(String key) {
+        CachedResult removed = results.remove(key);
+        if (removed != null) {
+            bytes -= removed.weight;
+        }
+    }
+
+    /**
+     * 字段以长度前缀分隔，避免不同字段拼接后产生相同的字节序列
+     */
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(new byte[]{-1, -1, -1, -1});
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+
+    private record CachedResult(Object result, String output, long weight, long expiresAt) {
+    }
+
+    /**
+     * 转发并收集输出的回调，超过上限后停止收集，该次结果不缓存
+     */
+    public static class OutputCapture implements Consumer<String> {
+        private final Consumer<String> delegate;
+        private final long limit;
+        private final StringBuilder output = new StringBuilder();
+        private boolean overflowed;
+
+        OutputCapture(Consumer<String> delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        /**
+         * 收集到的输出，超过上限时返回 null
+         */
+        public String getOutput() {
+            return overflowed ? null : output.toString();
+        }
+
+        @Override
+        public void accept(String chunk) {
+            if (!overflowed) {
+                if (output.length() + chunk.length() > limit) {
+                    overflowed = true;
+                    output.setLength(0);
+                } else {
+                    output.append(chunk);
+                }
+            }
+            delegate.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cn.lihongjie.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Source;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 脚本 Source 缓存
+ *
+ * 以语言和脚本内容的哈希为键缓存 {@link Source} 对象。相同的 Source 在共享 Engine 上
+ * 只需解析和编译一次，后续所有上下文都会命中 Engine 的代码缓存。
+ */
+@ApplicationScoped
+public class ScriptSourceCache {
+
+    private static final Pattern JS_IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+    @ConfigProperty(name = "script.source-cache.max-entries", defaultValue = "1024")
+    int maxEntries;
+
+    private final LinkedHashMap<String, Source> sources = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 获取脚本对应的 Source，不存在时创建并缓存
+     */
+    public Source get(String language, String script) {
+        String hash = hash(language, script);
+        synchronized (this) {
+            Source source = sources.get(hash);
+            if (source != null) {
+                hits++;
+                return source;
+            }
+            misses++;
+        }
+
+        Source source = Source.newBuilder(language, script, sourceName(language, hash))
+                .cached(true)
+                .buildLiteral();
+
+        synchronized (this) {
+            Source existing = sources.putIfAbsent(hash, source);
+            if (existing != null) {
+                return existing;
+            }
+            while (sources.size() > maxEntries) {
+                String eldest = sources.keySet().iterator().next();
+                sources.remove(eldest);
+                evictions++;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        long lookups = hits + misses;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", sources.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    /**
+     * 指定了标识符形式入口函数的 JavaScript 脚本在函数作用域中执行，顶层声明不会成为全局绑定，
+     * 执行后上下文可以清理并归还上下文池
+     */
+    static boolean isEntryScoped(String language, String entryFunction) {
+        return "js".equals(language) && entryFunction != null && JS_IDENTIFIER.matcher(entryFunction).matches();
+    }
+
+    /**
+     * 把脚本包装进函数作用域，求值结果为入口函数（未定义时为 undefined）；包装前缀与脚本首行同行，行号不变
+     */
+    static String entryScoped(String script, String entryFunction) {
+        return "(function () {" + script + "\nreturn typeof " + entryFunction + " === 'undefined' ? undefined : "
+                + entryFunction + ";\n})()";
+    }
+
+    /**
+     * 计算语言和脚本内容的 SHA-256 哈希
+     */
+    static String hash(String language, String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(language.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(script.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String sourceName(String language, String hash) {
+        String extension = switch (language) {
+            case "js" -> ".js";
+            case "python" -> ".py";
+            default -> "";
+        };
+        return "script-" + hash.substring(0, 12) + extension;
+    }
+}
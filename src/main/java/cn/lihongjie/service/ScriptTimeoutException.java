@@ -0,0 +1,20 @@
+package cn.lihongjie.service;
+
+/**
+ * 脚本执行超过最大执行时间
+ */
+public class ScriptTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long maxExecutionTime;
+
+    public ScriptTimeoutException(long maxExecutionTime) {
+        super("Script execution timed out after " + maxExecutionTime + " ms");
+        this.maxExecutionTime = maxExecutionTime;
+    }
+
+    public long getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+}
@@ -0,0 +1,271 @@
+package cn.lihongjie.service;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * 类型化数组和字节缓冲区的批量读写
+ *
+ * 脚本返回的 JS TypedArray/ArrayBuffer 和 Python bytes/bytearray/array 通过 {@link Value#readBuffer}
+ * 一次复制到 int[]、long[] 或 double[]，不逐个元素读取和装箱；
+ * 作为参数传入的基本类型数组和 {@link ByteBuffer} 在 JS 中以类型化数组的形式直接引用，不逐个元素复制。
+ */
+final class TypedArrays {
+
+    /**
+     * 短数组逐个元素转换更快，不走批量路径
+     */
+    static final int MIN_BULK_LENGTH = 16;
+
+    private static final Map<String, ElementType> JS_TYPES = Map.of(
+            "Int8Array", ElementType.INT8,
+            "Uint8Array", ElementType.UINT8,
+            "Uint8ClampedArray", ElementType.UINT8,
+            "Int16Array", ElementType.INT16,
+            "Uint16Array", ElementType.UINT16,
+            "Int32Array", ElementType.INT32,
+            "Uint32Array", ElementType.UINT32,
+            "BigInt64Array", ElementType.INT64,
+            "Float32Array", ElementType.FLOAT32,
+            "Float64Array", ElementType.FLOAT64);
+
+    private TypedArrays() {
+    }
+
+    /**
+     * 批量读取类型化数组或字节缓冲区
+     *
+     * @param maxLength 元素数超过该值时不批量读取，由调用方逐个元素转换并截断
+     * @return int[]、long[] 或 double[]（字节为 0-255 的 int[]），不是可批量读取的类型时返回 null
+     */
+    static Object read(Value value, long maxLength) {
+        if (value.hasBufferElements() && !value.hasArrayElements()) {
+            // JS ArrayBuffer
+            long length = value.getBufferSize();
+            return length <= maxLength ? read(value, 0, length, ElementType.UINT8) : null;
+        }
+        if (!value.hasArrayElements() || value.getArraySize() < MIN_BULK_LENGTH || value.getArraySize() > maxLength) {
+            return null;
+        }
+        Value meta = value.getMetaObject();
+        if (meta == null) {
+            return null;
+        }
+        String type = meta.getMetaSimpleName();
+        if (value.hasBufferElements()) {
+            if ("bytes".equals(type) || "bytearray".equals(type)) {
+                return read(value, 0, value.getBufferSize(), ElementType.UINT8);
+            }
+            if ("array".equals(type) && value.hasMember("typecode") && value.hasMember("itemsize")) {
+                ElementType elementType = ElementType.ofPython(value.getMember("typecode").asString(),
+                        value.getMember("itemsize").asInt());
+                return elementType != null ? read(value, 0, value.getBufferSize(), elementType) : null;
+            }
+            return null;
+        }
+        ElementType elementType = JS_TYPES.get(type);
+        if (elementType == null) {
+            return null;
+        }
+        Value buffer = value.getMember("buffer");
+        if (buffer == null || !buffer.hasBufferElements()) {
+            return null;
+        }
+        long byteOffset = value.getMember("byteOffset").asLong();
+        return read(buffer, byteOffset, value.getArraySize() * elementType.size, elementType);
+    }
+
+    private static Object read(Value buffer, long byteOffset, long byteLength, ElementType elementType) {
+        if (byteLength > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) byteLength];
+        buffer.readBuffer(byteOffset, bytes, 0, bytes.length);
+        return elementType.decode(ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()), bytes.length / elementType.size);
+    }
+
+    /**
+     * 将基本类型数组或 {@link ByteBuffer} 参数转换为脚本可以直接读取的值：
+     * JS 中为引用同一块内存的类型化数组（ByteBuffer 为 Uint8Array），其他语言为只读的数组视图；其他参数原样返回
+     */
+    static Object toGuest(Context context, String language, Object value) {
+        ByteBuffer buffer;
+        String constructor;
+        if (value instanceof ByteBuffer byteBuffer) {
+            if ("js".equals(language)) {
+                return context.getBindings("js").getMember("Uint8Array").newInstance(byteBuffer.slice());
+            }
+            return new BufferProxy(byteBuffer.slice());
+        } else if (value instanceof double[] array) {
+            buffer = allocate(array.length, Double.BYTES);
+            buffer.asDoubleBuffer().put(array);
+            constructor = "Float64Array";
+        } else if (value instanceof float[] array) {
+            buffer = allocate(array.length, Float.BYTES);
+            buffer.asFloatBuffer().put(array);
+            constructor = "Float32Array";
+        } else if (value instanceof int[] array) {
+            buffer = allocate(array.length, Integer.BYTES);
+            buffer.asIntBuffer().put(array);
+            constructor = "Int32Array";
+        } else if (value instanceof long[] array) {
+            buffer = allocate(array.length, Long.BYTES);
+            buffer.asLongBuffer().put(array);
+            constructor = "BigInt64Array";
+        } else if (value instanceof short[] array) {
+            buffer = allocate(array.length, Short.BYTES);
+            buffer.asShortBuffer().put(array);
+            constructor = "Int16Array";
+        } else if (value instanceof byte[] array) {
+            buffer = allocate(array.length, Byte.BYTES);
+            buffer.put(array);
+            constructor = "Int8Array";
+        } else {
+            return value;
+        }
+        if ("js".equals(language)) {
+            return context.getBindings("js").getMember(constructor).newInstance(buffer);
+        }
+        return new PrimitiveArrayProxy(value);
+    }
+
+    private static ByteBuffer allocate(int length, int size) {
+        return ByteBuffer.allocate(length * size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 元素类型及其解码方式
+     */
+    private enum ElementType {
+        INT8(1), UINT8(1), INT16(2), UINT16(2), INT32(4), UINT32(4), INT64(8), FLOAT32(4), FLOAT64(8);
+
+        final int size;
+
+        ElementType(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Python array 的类型码，无符号 64 位整数和字符类型不批量读取
+         */
+        static ElementType ofPython(String typecode, int itemsize) {
+            boolean signed = Character.isLowerCase(typecode.charAt(0));
+            return switch (typecode) {
+                case "f" -> FLOAT32;
+                case "d" -> FLOAT64;
+                case "b", "B", "h", "H", "i", "I", "l", "L", "q", "Q" -> switch (itemsize) {
+                    case 1 -> signed ? INT8 : UINT8;
+                    case 2 -> signed ? INT16 : UINT16;
+                    case 4 -> signed ? INT32 : UINT32;
+                    case 8 -> signed ? INT64 : null;
+                    default -> null;
+                };
+                default -> null;
+            };
+        }
+
+        Object decode(ByteBuffer buffer, int length) {
+            switch (this) {
+                case INT32 -> {
+                    int[] values = new int[length];
+                    buffer.asIntBuffer().get(values);
+                    return values;
+                }
+                case INT64 -> {
+                    long[] values = new long[length];
+                    buffer.asLongBuffer().get(values);
+                    return values;
+                }
+                case FLOAT64 -> {
+                    double[] values = new double[length];
+                    buffer.asDoubleBuffer().get(values);
+                    return values;
+                }
+                case UINT32 -> {
+                    long[] values = new long[length];
+                    for (int i = 0; i < length; i++) {
+                        values[i] = buffer.getInt(i * 4) & 0xFFFFFFFFL;
+                    }
+                    return values;
+                }
+                case FLOAT32 -> {
+                    double[] values = new double[length];
+                    for (int i = 0; i < length; i++) {
+                        values[i] = buffer.getFloat(i * 4);
+                    }
+                    return values;
+                }
+                default -> {
+                    int[] values = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        values[i] = switch (this) {
+                            case INT8 -> buffer.get(i);
+                            case UINT8 -> buffer.get(i) & 0xFF;
+                            case INT16 -> buffer.getShort(i * 2);
+                            default -> buffer.getShort(i * 2) & 0xFFFF;
+                        };
+                    }
+                    return values;
+                }
+            }
+        }
+    }
+
+    /**
+     * 基本类型数组的只读视图，读取时才装箱单个元素
+     */
+    static class PrimitiveArrayProxy implements ProxyArray {
+        private final Object array;
+
+        PrimitiveArrayProxy(Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public Object get(long index) {
+            return Array.get(array, (int) index);
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("read-only array");
+        }
+
+        @Override
+        public long getSize() {
+            return Array.getLength(array);
+        }
+    }
+
+    /**
+     * ByteBuffer 的只读视图，元素为 0-255 的整数
+     */
+    private static class BufferProxy implements ProxyArray {
+        private final ByteBuffer buffer;
+
+        BufferProxy(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Object get(long index) {
+            return buffer.get((int) index) & 0xFF;
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("read-only buffer");
+        }
+
+        @Override
+        public long getSize() {
+            return buffer.remaining();
+        }
+    }
+}
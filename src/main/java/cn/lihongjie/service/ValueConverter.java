@@ -0,0 +1,538 @@
+package cn.lihongjie.service;
+
+import cn.lihongjie.model.RawJsonValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.graalvm.polyglot.Value;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 将脚本返回的 {@link Value} 转换为可序列化为 JSON 的 Java 对象，或直接写为 JSON 文本
+ *
+ * 数组、Python 集合和可迭代对象转换为 {@link List}，JS 对象、Map 和 Python 字典/对象转换为 {@link Map}，
+ * 函数成员被忽略（与 JSON.stringify 一致）。使用显式栈逐层展开而不是递归，
+ * 深层嵌套的结果不会导致栈溢出。超过深度、元素数或估算字节数上限的部分以截断标记代替，
+ * 引用自身祖先的对象（循环引用）以 {@value #CIRCULAR} 代替。类型化数组和字节缓冲区批量读取为基本类型数组，
+ * 见 {@link TypedArrays}。
+ *
+ * 必须在执行脚本的线程上、上下文关闭前调用。
+ */
+@ApplicationScoped
+public class ValueConverter {
+
+    static final String CIRCULAR = "[Circular]";
+    static final String TRUNCATED = "[Truncated]";
+    static final String TRUNCATED_KEY = "...";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @ConfigProperty(name = "script.result.max-depth", defaultValue = "64")
+    int maxDepth;
+
+    @ConfigProperty(name = "script.result.max-elements", defaultValue = "100000")
+    int maxElements;
+
+    @ConfigProperty(name = "script.result.max-bytes", defaultValue = "16777216")
+    long maxBytes;
+
+    private final AtomicLong conversions = new AtomicLong();
+    private final AtomicLong jsonWrites = new AtomicLong();
+    private final AtomicLong bulkReads = new AtomicLong();
+    private final AtomicLong truncations = new AtomicLong();
+    private final AtomicLong circularReferences = new AtomicLong();
+
+    /**
+     * 转换脚本返回值
+     */
+    public Object convert(Value value) {
+        conversions.incrementAndGet();
+        TreeSink sink = new TreeSink();
+        walk(value, sink);
+        return sink.root;
+    }
+
+    /**
+     * 将脚本返回值直接写为 JSON 文本，不构建中间的 Java 对象，结果与 {@link #convert} 序列化后相同
+     */
+    public RawJsonValue toJson(Value value) {
+        jsonWrites.incrementAndGet();
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            walk(value, new JsonSink(generator));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new RawJsonValue(writer.toString());
+    }
+
+    /**
+     * 转换器统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxDepth", maxDepth);
+        stats.put("maxElements", maxElements);
+        stats.put("maxBytes", maxBytes);
+        stats.put("conversions", conversions.get());
+        stats.put("jsonWrites", jsonWrites.get());
+        stats.put("bulkReads", bulkReads.get());
+        stats.put("truncations", truncations.get());
+        stats.put("circularReferences", circularReferences.get());
+        return stats;
+    }
+
+    private void walk(Value value, Sink sink) {
+        Conversion conversion = new Conversion(sink);
+        conversion.open(value, null, 0, true);
+        while (!conversion.stack.isEmpty()) {
+            Frame frame = conversion.stack.peek();
+            if (conversion.exhausted()) {
+                if (frame.hasMore()) {
+                    sink.value(frame.truncatedKey(), TRUNCATED);
+                    conversion.truncated = true;
+                }
+                conversion.close(frame);
+                continue;
+            }
+            if (!frame.advance()) {
+                conversion.close(frame);
+                continue;
+            }
+            conversion.open(frame.nextValue, frame.nextKey, frame.depth + 1, false);
+        }
+        if (conversion.truncated) {
+            truncations.incrementAndGet();
+        }
+    }
+
+    /**
+     * 一次转换的状态：待展开的容器栈、当前路径上的对象（用于检测循环引用）和已用预算
+     */
+    private class Conversion {
+        final Sink sink;
+        final Deque<Frame> stack = new ArrayDeque<>();
+        final Set<Value> path = new HashSet<>();
+        long elements;
+        long bytes;
+        boolean truncated;
+
+        Conversion(Sink sink) {
+            this.sink = sink;
+        }
+
+        boolean exhausted() {
+            return elements >= maxElements || bytes >= maxBytes;
+        }
+
+        /**
+         * 输出标量，或开始一个容器并压栈等待展开
+         *
+         * @param key  所在对象中的键，数组元素和顶层值为 null
+         * @param root 顶层值的函数保留为字符串表示，嵌套的函数转换为 null
+         */
+        void open(Value value, String key, int depth, boolean root) {
+            elements++;
+            if (key != null) {
+                bytes += key.length() + 3;
+            }
+            if (value == null || value.isNull()) {
+                scalar(key, null, 4);
+            } else if (value.isBoolean()) {
+                scalar(key, value.asBoolean(), 5);
+            } else if (value.isNumber()) {
+                scalar(key, number(value), 8);
+            } else if (value.isString()) {
+                string(key, value.asString());
+            } else if (value.isInstant() || value.isDate() || value.isTime()) {
+                string(key, temporal(value));
+            } else if (value.canExecute() && !value.hasArrayElements() && !value.hasHashEntries()) {
+                if (root) {
+                    string(key, value.toString());
+                } else {
+                    scalar(key, null, 4);
+                }
+            } else if (value.isHostObject()
+                    || (!value.hasArrayElements() && !value.hasHashEntries() && !value.hasIterator() && !value.hasMembers())) {
+                string(key, value.toString());
+            } else if (depth >= maxDepth) {
+                truncated = true;
+                string(key, TRUNCATED);
+            } else if (bulk(value, key)) {
+                return;
+            } else if (path.contains(value)) {
+                circularReferences.incrementAndGet();
+                string(key, CIRCULAR);
+            } else {
+                bytes += 2;
+                Frame frame;
+                if (value.hasArrayElements()) {
+                    frame = new ArrayFrame(value, depth);
+                } else if (value.hasHashEntries()) {
+                    frame = new HashFrame(value, depth);
+                } else if (value.hasIterator()) {
+                    frame = new IteratorFrame(value, depth);
+                } else {
+                    frame = new MemberFrame(value, depth);
+                }
+                path.add(value);
+                stack.push(frame);
+                sink.start(key, frame.object());
+            }
+        }
+
+        void close(Frame frame) {
+            stack.pop();
+            path.remove(frame.source);
+            sink.end(frame.object());
+        }
+
+        /**
+         * 类型化数组和字节缓冲区批量读取为基本类型数组，超出剩余预算时返回 false，逐个元素转换
+         */
+        private boolean bulk(Value value, String key) {
+            long remaining = Math.min(maxElements - elements, (maxBytes - bytes) / 8);
+            Object array = TypedArrays.read(value, remaining);
+            if (array == null) {
+                return false;
+            }
+            int length = Array.getLength(array);
+            elements += length;
+            bytes += 8L * length + 2;
+            bulkReads.incrementAndGet();
+            sink.value(key, array);
+            return true;
+        }
+
+        private void scalar(String key, Object value, int size) {
+            bytes += size;
+            sink.value(key, value);
+        }
+
+        private void string(String key, String value) {
+            bytes += value.length() + 2;
+            sink.value(key, value);
+        }
+    }
+
+    private static Object number(Value value) {
+        if (value.fitsInInt()) {
+            return value.asInt();
+        } else if (value.fitsInLong()) {
+            return value.asLong();
+        } else if (value.fitsInDouble()) {
+            return value.asDouble();
+        } else if (value.fitsInBigInteger()) {
+            return value.asBigInteger();
+        }
+        return value.toString();
+    }
+
+    /**
+     * 日期时间转换为 ISO-8601 字符串
+     */
+    private static String temporal(Value value) {
+        if (value.isInstant()) {
+            return value.asInstant().toString();
+        }
+        if (value.isDate() && value.isTime()) {
+            return value.asDate().atTime(value.asTime()).toString();
+        }
+        return value.isDate() ? value.asDate().toString() : value.asTime().toString();
+    }
+
+    /**
+     * 转换结果的接收方：构建 Java 对象或写出 JSON
+     */
+    private interface Sink {
+        /**
+         * 标量值（null、Boolean、数字或 String），或批量读取的 int[]、long[]、double[]
+         */
+        void value(String key, Object value);
+
+        void start(String key, boolean object);
+
+        void end(boolean object);
+    }
+
+    /**
+     * 构建 List/Map 组成的 Java 对象
+     */
+    private static class TreeSink implements Sink {
+        final Deque<Object> containers = new ArrayDeque<>();
+        Object root;
+
+        @Override
+        public void value(String key, Object value) {
+            add(key, value);
+        }
+
+        @Override
+        public void start(String key, boolean object) {
+            Object container = object ? new LinkedHashMap<String, Object>() : new ArrayList<>();
+            add(key, container);
+            containers.push(container);
+        }
+
+        @Override
+        public void end(boolean object) {
+            containers.pop();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(String key, Object value) {
+            Object parent = containers.peek();
+            if (parent == null) {
+                root = value;
+            } else if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(key, value);
+            } else {
+                ((List<Object>) parent).add(value);
+            }
+        }
+    }
+
+    /**
+     * 直接写出 JSON
+     */
+    private static class JsonSink implements Sink {
+        final JsonGenerator generator;
+
+        JsonSink(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void value(String key, Object value) {
+            try {
+                if (key != null) {
+                    generator.writeFieldName(key);
+                }
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Boolean b) {
+                    generator.writeBoolean(b);
+                } else if (value instanceof Integer i) {
+                    generator.writeNumber(i);
+                } else if (value instanceof Long l) {
+                    generator.writeNumber(l);
+                } else if (value instanceof Double d) {
+                    generator.writeNumber(d);
+                } else if (value instanceof BigInteger b) {
+                    generator.writeNumber(b);
+                } else if (value instanceof int[] array) {
+                    generator.writeArray(array, 0, array.length);
+                } else if (value instanceof long[] array) {
+                    generator.writeArray(array, 0, array.length);
+                } else if (value instanceof double[] array) {
+                    generator.writeArray(array, 0, array.length);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void start(String key, boolean object) {
+            try {
+                if (key != null) {
+                    generator.writeFieldName(key);
+                }
+                if (object) {
+                    generator.writeStartObject();
+                } else {
+                    generator.writeStartArray();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void end(boolean object) {
+            try {
+                if (object) {
+                    generator.writeEndObject();
+                } else {
+                    generator.writeEndArray();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 待展开的容器，每次 advance 取出下一个子值及其键
+     */
+    private abstract class Frame {
+        final Value source;
+        final int depth;
+        Value nextValue;
+        String nextKey;
+
+        Frame(Value source, int depth) {
+            this.source = source;
+            this.depth = depth;
+        }
+
+        /**
+         * 是否转换为对象（否则为数组）
+         */
+        abstract boolean object();
+
+        abstract boolean hasMore();
+
+        abstract boolean advance();
+
+        /**
+         * 预算用尽时截断标记使用的键
+         */
+        String truncatedKey() {
+            return object() ? TRUNCATED_KEY : null;
+        }
+    }
+
+    private class ArrayFrame extends Frame {
+        final long size;
+        long index;
+
+        ArrayFrame(Value source, int depth) {
+            super(source, depth);
+            this.size = source.getArraySize();
+        }
+
+        @Override
+        boolean object() {
+            return false;
+        }
+
+        @Override
+        boolean hasMore() {
+            return index < size;
+        }
+
+        @Override
+        boolean advance() {
+            if (index >= size) {
+                return false;
+            }
+            nextValue = source.getArrayElement(index++);
+            return true;
+        }
+    }
+
+    private class IteratorFrame extends Frame {
+        final Value iterator;
+
+        IteratorFrame(Value source, int depth) {
+            super(source, depth);
+            this.iterator = source.getIterator();
+        }
+
+        @Override
+        boolean object() {
+            return false;
+        }
+
+        @Override
+        boolean hasMore() {
+            return iterator.hasIteratorNextElement();
+        }
+
+        @Override
+        boolean advance() {
+            if (!iterator.hasIteratorNextElement()) {
+                return false;
+            }
+            nextValue = iterator.getIteratorNextElement();
+            return true;
+        }
+    }
+
+    private class HashFrame extends Frame {
+        final Value iterator;
+
+        HashFrame(Value source, int depth) {
+            super(source, depth);
+            this.iterator = source.getHashEntriesIterator();
+        }
+
+        @Override
+        boolean object() {
+            return true;
+        }
+
+        @Override
+        boolean hasMore() {
+            return iterator.hasIteratorNextElement();
+        }
+
+        @Override
+        boolean advance() {
+            if (!iterator.hasIteratorNextElement()) {
+                return false;
+            }
+            Value entry = iterator.getIteratorNextElement();
+            Value key = entry.getArrayElement(0);
+            nextKey = key.isString() ? key.asString() : key.toString();
+            nextValue = entry.getArrayElement(1);
+            return true;
+        }
+    }
+
+    private class MemberFrame extends Frame {
+        final Iterator<String> keys;
+
+        MemberFrame(Value source, int depth) {
+            super(source, depth);
+            this.keys = new ArrayList<>(source.getMemberKeys()).iterator();
+        }
+
+        @Override
+        boolean object() {
+            return true;
+        }
+
+        @Override
+        boolean hasMore() {
+            return keys.hasNext();
+        }
+
+        /**
+         * 跳过函数成员（方法）
+         */
+        @Override
+        boolean advance() {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Value member = source.getMember(key);
+                if (member != null && member.canExecute() && !member.hasArrayElements() && !member.hasHashEntries()) {
+                    continue;
+                }
+                nextKey = key;
+                nextValue = member;
+                return true;
+            }
+            return false;
+        }
+    }
+}
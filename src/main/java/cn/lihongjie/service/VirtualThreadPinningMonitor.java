@@ -0,0 +1,110 @@
+package cn.lihongjie.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程固定（pinning）诊断
+ *
+ * 通过 JFR 事件流监听 {@code jdk.VirtualThreadPinned}：虚拟线程在 synchronized 块或本地方法中阻塞时
+ * 无法让出载体线程，此时虚拟线程退化为平台线程。按阻塞位置汇总次数，首次出现时输出警告日志。
+ */
+class VirtualThreadPinningMonitor {
+
+    private static final Logger LOG = Logger.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOCATIONS = 20;
+
+    private final Duration threshold;
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong totalPinnedNanos = new AtomicLong();
+    private final AtomicLong maxPinnedNanos = new AtomicLong();
+    private final Map<String, Long> locations = new LinkedHashMap<>();
+    private RecordingStream stream;
+
+    VirtualThreadPinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * 启动监听；JFR 不可用（如部分原生镜像）时只记录日志
+     */
+    void start() {
+        try {
+            stream = new RecordingStream();
+            stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+            stream.setMaxAge(Duration.ofMinutes(1));
+            stream.onEvent(EVENT, this::onPinned);
+            stream.startAsync();
+        } catch (Exception | LinkageError e) {
+            stream = null;
+            LOG.warnf("Virtual thread pinning diagnostics unavailable: %s", e.getMessage());
+        }
+    }
+
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", stream != null);
+        stats.put("thresholdMillis", threshold.toMillis());
+        stats.put("events", events.get());
+        stats.put("totalPinnedMillis", totalPinnedNanos.get() / 1_000_000.0);
+        stats.put("maxPinnedMillis", maxPinnedNanos.get() / 1_000_000.0);
+        synchronized (locations) {
+            stats.put("locations", new LinkedHashMap<>(locations));
+        }
+        return stats;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        events.incrementAndGet();
+        totalPinnedNanos.addAndGet(nanos);
+        maxPinnedNanos.accumulateAndGet(nanos, Math::max);
+
+        String location = location(event.getStackTrace());
+        boolean first;
+        synchronized (locations) {
+            first = !locations.containsKey(location);
+            if (first && locations.size() >= MAX_LOCATIONS) {
+                location = "other";
+                first = false;
+            }
+            locations.merge(location, 1L, Long::sum);
+        }
+        if (first) {
+            LOG.warnf("Virtual thread pinned for %d ms at %s", nanos / 1_000_000, location);
+        }
+    }
+
+    /**
+     * 取第一个不属于虚拟线程调度和锁实现的栈帧作为阻塞位置
+     */
+    private static String location(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("java.lang.VirtualThread") || type.startsWith("jdk.internal.")
+                    || type.startsWith("java.util.concurrent.locks.") || type.equals("java.lang.Thread")) {
+                continue;
+            }
+            return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+        }
+        return "unknown";
+    }
+}
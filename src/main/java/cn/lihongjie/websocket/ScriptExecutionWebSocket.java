@@ -2,15 +2,24 @@ package cn.lihongjie.websocket;
 
 import cn.lihongjie.model.ScriptExecutionRequest;
 import cn.lihongjie.model.ScriptExecutionResult;
+import cn.lihongjie.service.ScriptExecutionRejectedException;
 import cn.lihongjie.service.ScriptExecutionService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.websocket.*;
 import jakarta.websocket.server.ServerEndpoint;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @ServerEndpoint("/ws/script")
 @ApplicationScoped
@@ -20,69 +29,145 @@ public class ScriptExecutionWebSocket {
     ScriptExecutionService scriptExecutionService;
     
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // 二进制帧使用 CBOR 编码，消息格式与文本帧相同
+    private final ObjectMapper cborMapper = new CBORMapper();
     private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    // 每个会话中未结束的执行ID，断开连接时取消
+    private final ConcurrentHashMap<String, Set<String>> sessionExecutions = new ConcurrentHashMap<>();
     
     @OnOpen
     public void onOpen(Session session) {
         sessions.put(session.getId(), session);
-        sendMessage(session, createMessage("connection", "Connected to script execution service", null));
+        sendMessage(session, false, "connection", "Connected to script execution service", null);
     }
     
     @OnClose
     public void onClose(Session session) {
         sessions.remove(session.getId());
+        Set<String> executions = sessionExecutions.remove(session.getId());
+        if (executions != null) {
+            executions.forEach(scriptExecutionService::cancel);
+        }
     }
     
     @OnError
     public void onError(Session session, Throwable throwable) {
-        sendMessage(session, createMessage("error", "WebSocket error: " + throwable.getMessage(), null));
+        sendMessage(session, false, "error", "WebSocket error: " + throwable.getMessage(), null);
     }
     
     @OnMessage
     public void onMessage(String message, Session session) {
         try {
-            ScriptExecutionRequest request = objectMapper.readValue(message, ScriptExecutionRequest.class);
-            
-            // 发送开始执行消息
-            sendMessage(session, createMessage("start", "Script execution started", null));
-            
-            // 异步执行脚本
-            CompletableFuture<ScriptExecutionResult> future = scriptExecutionService.executeScriptAsync(
-                request, 
-                output -> {
-                    // 实时发送输出
-                    sendMessage(session, createMessage("output", output, null));
-                }
-            );
-            
-            // 处理执行结果
-            future.whenComplete((result, throwable) -> {
-                try {
-                    if (throwable != null) {
-                        sendMessage(session, createMessage("error", "Execution failed: " + throwable.getMessage(), null));
-                    } else {
-                        sendMessage(session, createMessage("result", "Script execution completed", result));
-                    }
-                    
-                    // 发送完成信号，告知客户端可以进行下一次执行
-                    sendMessage(session, createMessage("ready", "Ready for next execution", null));
-                } catch (Exception e) {
-                    sendMessage(session, createMessage("error", "Failed to send result: " + e.getMessage(), null));
-                }
-            });
-            
+            handleMessage(objectMapper.readTree(message), session, false);
         } catch (Exception e) {
-            sendMessage(session, createMessage("error", "Invalid request: " + e.getMessage(), null));
+            sendMessage(session, false, "error", "Invalid request: " + e.getMessage(), null);
             // 即使出错也发送ready信号
-            sendMessage(session, createMessage("ready", "Ready for next execution", null));
+            sendMessage(session, false, "ready", "Ready for next execution", null);
+        }
+    }
+    
+    /**
+     * 二进制帧：CBOR 编码的请求，本次执行的回复同样以 CBOR 二进制帧发送
+     */
+    @OnMessage
+    public void onBinaryMessage(byte[] message, Session session) {
+        try {
+            handleMessage(cborMapper.readTree(message), session, true);
+        } catch (Exception e) {
+            sendMessage(session, true, "error", "Invalid request: " + e.getMessage(), null);
+            sendMessage(session, true, "ready", "Ready for next execution", null);
+        }
+    }
+    
+    private void handleMessage(JsonNode node, Session session, boolean binary) throws Exception {
+        if ("cancel".equals(node.path("type").asText())) {
+            handleCancel(node.path("executionId").asText(null), session, binary);
+            return;
+        }
+        ScriptExecutionRequest request = (binary ? cborMapper : objectMapper).treeToValue(node, ScriptExecutionRequest.class);
+        // 文本帧的结果由执行线程直接写为 JSON 文本，二进制帧的结果转换为对象后编码
+        request.setRawJsonResult(!binary);
+        
+        // 分配执行ID；服务受理后才登记到会话，断开连接和取消时据此判断归属，会话内重复的执行ID不重复登记
+        if (request.getExecutionId() == null || request.getExecutionId().isBlank()) {
+            request.setExecutionId(UUID.randomUUID().toString());
+        }
+        String executionId = request.getExecutionId();
+        Set<String> executions = sessionExecutions.computeIfAbsent(session.getId(), id -> ConcurrentHashMap.newKeySet());
+        AtomicBoolean tracked = new AtomicBoolean();
+        
+        // 发送开始执行消息
+        sendMessage(session, binary, "start", "Script execution started", Map.of("executionId", executionId));
+        
+        // 异步执行脚本
+        CompletableFuture<ScriptExecutionResult> future = scriptExecutionService.executeScriptAsync(
+            request, 
+            output -> {
+                // 实时发送输出
+                sendMessage(session, binary, "output", output, null);
+            },
+            () -> {
+                if (executions.add(executionId)) {
+                    tracked.set(true);
+                }
+            }
+        );
+        
+        // 处理执行结果
+        future.whenComplete((result, throwable) -> {
+            if (tracked.get()) {
+                executions.remove(executionId);
+            }
+            try {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                if (cause instanceof ScriptExecutionRejectedException) {
+                    // 执行线程池饱和，通知客户端稍后重试
+                    sendMessage(session, binary, "busy", cause.getMessage(), null);
+                } else if (cause != null) {
+                    sendMessage(session, binary, "error", "Execution failed: " + cause.getMessage(), null);
+                } else {
+                    sendMessage(session, binary, "result", "Script execution completed", result);
+                }
+                
+                // 发送完成信号，告知客户端可以进行下一次执行
+                sendMessage(session, binary, "ready", "Ready for next execution", null);
+            } catch (Exception e) {
+                sendMessage(session, binary, "error", "Failed to send result: " + e.getMessage(), null);
+            }
+        });
+    }
+    
+    /**
+     * 取消执行；未指定执行ID时取消本会话的全部执行，只能取消本会话发起的执行
+     */
+    private void handleCancel(String executionId, Session session, boolean binary) {
+        Set<String> executions = sessionExecutions.getOrDefault(session.getId(), Set.of());
+        if (executionId == null || executionId.isBlank()) {
+            executions.forEach(scriptExecutionService::cancel);
+            sendMessage(session, binary, "cancel", "Cancelling " + executions.size() + " execution(s)", null);
+            return;
+        }
+        // 其他会话或 REST 接口发起的执行视为不存在
+        if (executions.contains(executionId) && scriptExecutionService.cancel(executionId)) {
+            sendMessage(session, binary, "cancel", "Cancelling execution", Map.of("executionId", executionId));
+        } else {
+            sendMessage(session, binary, "error", "Execution not found: " + executionId, Map.of("executionId", executionId));
         }
     }
     
-    private void sendMessage(Session session, String message) {
+    /**
+     * 发送消息，binary 为 true 时以 CBOR 编码的二进制帧发送
+     */
+    private void sendMessage(Session session, boolean binary, String type, String message, Object data) {
         try {
             if (session.isOpen()) {
                 // 使用异步发送避免在IO线程中阻塞
-                session.getAsyncRemote().sendText(message);
+                if (binary) {
+                    session.getAsyncRemote().sendBinary(ByteBuffer.wrap(createBinaryMessage(type, message, data)));
+                } else {
+                    session.getAsyncRemote().sendText(createMessage(type, message, data));
+                }
             }
         } catch (Exception e) {
             // 忽略发送失败
@@ -98,6 +183,14 @@ public class ScriptExecutionWebSocket {
         }
     }
     
+    private byte[] createBinaryMessage(String type, String message, Object data) throws Exception {
+        try {
+            return cborMapper.writeValueAsBytes(new WebSocketMessage(type, message, data, System.currentTimeMillis()));
+        } catch (Exception e) {
+            return cborMapper.writeValueAsBytes(new WebSocketMessage("error", "Failed to serialize message", null, System.currentTimeMillis()));
+        }
+    }
+    
     // WebSocket消息格式
     public static class WebSocketMessage {
         private String type;
@@ -284,7 +284,7 @@ function buildRequest() {
             allowCreateThread: document.getElementById('allowCreateThread').checked,
             allowEnvironmentAccess: document.getElementById('allowEnvironmentAccess').checked,
             maxExecutionTime: parseInt(document.getElementById('maxExecutionTime').value) || 30000,
-            maxMemoryUsage: 128 * 1024 * 1024
+            maxAllocatedBytes: 1024 * 1024 * 1024
         }
     };
 }
@@ -1,13 +1,21 @@
 package cn.lihongjie.controller;
 
+import cn.lihongjie.model.ScriptBatchRequest;
 import cn.lihongjie.model.ScriptExecutionRequest;
 import cn.lihongjie.model.ScriptPermissions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 @QuarkusTest
 public class ScriptControllerTest {
@@ -31,6 +39,16 @@ public class ScriptControllerTest {
                 // 移除对ruby的检查，因为现在支持的是llvm, js, python
     }
 
+    @Test
+    public void testGetLanguageDetails() {
+        given()
+                .when().get("/api/script/languages/details")
+                .then()
+                .statusCode(200)
+                .body("id", hasItems("js", "python"))
+                .body("find { it.id == 'js' }.aliases", hasItem("javascript"));
+    }
+
     @Test
     public void testGetSandboxPermissions() {
         given()
@@ -112,4 +130,267 @@ public class ScriptControllerTest {
                 .body("success", is(false))
                 .body("error", notNullValue());
     }
+
+    @Test
+    public void testCancelUnknownExecution() {
+        given()
+                .when().delete("/api/script/executions/no-such-execution")
+                .then()
+                .statusCode(404)
+                .body("executionId", is("no-such-execution"));
+    }
+
+    @Test
+    public void testListRunningExecutions() {
+        given()
+                .when().get("/api/script/executions")
+                .then()
+                .statusCode(200);
+    }
+
+    @Test
+    public void testSubmitJobAndFetchResult() throws InterruptedException {
+        ScriptExecutionRequest request = new ScriptExecutionRequest();
+        request.setScript("console.log('job output'); 6 * 7");
+        request.setLanguage("js");
+
+        String executionId = given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when().post("/api/script/jobs")
+                .then()
+                .statusCode(202)
+                .header("Location", containsString("/api/script/jobs/"))
+                .body("executionId", notNullValue())
+                .extract().path("executionId");
+
+        for (int i = 0; i < 100 && !"FINISHED".equals(given().get("/api/script/jobs/" + executionId).path("state")); i++) {
+            Thread.sleep(50);
+        }
+
+        given()
+                .when().get("/api/script/jobs/" + executionId + "/result")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result", is(42));
+
+        given()
+                .queryParam("offset", 0)
+                .when().get("/api/script/jobs/" + executionId + "/output")
+                .then()
+                .statusCode(200)
+                .body("output", containsString("job output"));
+    }
+
+    @Test
+    public void testUnknownJob() {
+        given()
+                .when().get("/api/script/jobs/no-such-job")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    public void testExecuteBatch() {
+        ScriptBatchRequest request = new ScriptBatchRequest("function add(a, b) { return a + b; }", "js", "add",
+                ScriptPermissions.createSandbox(), List.of(new Object[]{1, 2}, new Object[]{10, 20}));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when().post("/api/script/batch")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result.size()", is(2))
+                .body("result[0].result", is(3))
+                .body("result[1].result", is(30));
+    }
+
+    @Test
+    public void testExecuteBatchWithoutEntryFunction() {
+        ScriptBatchRequest request = new ScriptBatchRequest("1", "js", null, null, List.<Object[]>of(new Object[0]));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when().post("/api/script/batch")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testExecuteStreamNdjson() {
+        ScriptExecutionRequest request = new ScriptExecutionRequest();
+        request.setScript("console.log('first'); console.log('second'); 'done'");
+        request.setLanguage("js");
+
+        given()
+                .contentType(ContentType.JSON)
+                .accept("application/x-ndjson")
+                .body(request)
+                .when().post("/api/script/execute/stream")
+                .then()
+                .statusCode(200)
+                .body(containsString("\"type\":\"start\""))
+                .body(containsString("\"output\":\"first\\n\""))
+                .body(containsString("\"type\":\"result\""))
+                .body(containsString("\"result\":\"done\""));
+    }
+
+    @Test
+    public void testExecuteStreamSse() {
+        ScriptExecutionRequest request = new ScriptExecutionRequest();
+        request.setScript("console.log('hello'); 1 + 1");
+        request.setLanguage("js");
+
+        given()
+                .contentType(ContentType.JSON)
+                .accept("text/event-stream")
+                .body(request)
+                .when().post("/api/script/execute/stream")
+                .then()
+                .statusCode(200)
+                .body(containsString("data:"))
+                .body(containsString("\"type\":\"result\""));
+    }
+
+    @Test
+    public void testRegisterAndExecuteScript() {
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"controller-test-add\", \"script\": \"function add(a, b) { return a + b; }\", \"entryFunction\": \"add\"}")
+                .when().post("/api/script/scripts")
+                .then()
+                .statusCode(201)
+                .body("name", is("controller-test-add"))
+                .body("version", is(1));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"scriptId\": \"controller-test-add\", \"args\": [2, 3]}")
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result", is(5));
+
+        given()
+                .when().get("/api/script/scripts/controller-test-add/1")
+                .then()
+                .statusCode(200)
+                .body("script", containsString("function add"));
+    }
+
+    @Test
+    public void testUnknownRegisteredScript() {
+        given()
+                .when().get("/api/script/scripts/controller-test-missing")
+                .then()
+                .statusCode(404);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"scriptId\": \"controller-test-missing\"}")
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(404)
+                .body("success", is(false));
+    }
+
+    @Test
+    public void testCacheableExecution() {
+        String body = "{\"script\": \"function double(x) { return x * 2; }\", \"entryFunction\": \"double\", "
+                + "\"args\": [8], \"cacheable\": true}";
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("result", is(16));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("result", is(16))
+                .body("cached", is(true));
+    }
+
+    @Test
+    public void testExecuteStructuredResult() {
+        ScriptExecutionRequest request = new ScriptExecutionRequest();
+        request.setScript("const node = { name: 'root', tags: new Set(['a', 'b']), scores: new Map([['x', 1.5]]) }; node.self = node; node");
+        request.setLanguage("js");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result.name", is("root"))
+                .body("result.tags", contains("a", "b"))
+                .body("result.scores.x", is(1.5f))
+                .body("result.self", is("[Circular]"));
+    }
+
+    @Test
+    public void testExecuteWithJsonArguments() {
+        String body = "{\"script\": \"def total(order):\\n    return [order['customer']['name'], sum(item['qty'] for item in order['items'])]\", "
+                + "\"language\": \"python\", \"entryFunction\": \"total\", "
+                + "\"args\": [{\"customer\": {\"name\": \"alice\"}, \"items\": [{\"qty\": 1}, {\"qty\": 2}]}]}";
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result", contains("alice", 3));
+    }
+
+    @Test
+    public void testExecuteCbor() throws Exception {
+        CBORMapper cbor = new CBORMapper();
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("script", "function stats(bytes, xs) { return [bytes[1], xs.reduce((a, b) => a + b, 0), new Float64Array(xs)]; }");
+        request.put("entryFunction", "stats");
+        request.put("args", List.of(new byte[]{1, (byte) 200}, new double[]{0.5, 1.5, 2.0}));
+
+        byte[] response = given()
+                .contentType("application/cbor")
+                .accept("application/cbor")
+                .body(cbor.writeValueAsBytes(request))
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .contentType("application/cbor")
+                .extract().asByteArray();
+
+        JsonNode result = cbor.readTree(response);
+        assertTrue(result.get("success").booleanValue());
+        assertEquals(200, result.get("result").get(0).intValue());
+        assertEquals(4.0, result.get("result").get(1).doubleValue());
+        assertEquals(3, result.get("result").get(2).size());
+        assertEquals(1.5, result.get("result").get(2).get(1).doubleValue());
+
+        // CBOR 请求也可以接收 JSON 响应
+        given()
+                .contentType("application/cbor")
+                .accept(ContentType.JSON)
+                .body(cbor.writeValueAsBytes(request))
+                .when().post("/api/script/execute")
+                .then()
+                .statusCode(200)
+                .body("success", is(true))
+                .body("result[0]", is(200));
+    }
 }
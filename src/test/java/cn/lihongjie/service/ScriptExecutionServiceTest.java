@@ -1,8 +1,16 @@
 package cn.lihongjie.service;
 
+import cn.lihongjie.model.ExecutionStatus;
+import cn.lihongjie.model.JobState;
+import cn.lihongjie.model.ScriptDefinition;
+import cn.lihongjie.model.ScriptBatchItemResult;
+import cn.lihongjie.model.ScriptBatchRequest;
 import cn.lihongjie.model.ScriptExecutionRequest;
 import cn.lihongjie.model.ScriptExecutionResult;
+import cn.lihongjie.model.ScriptJobOutput;
+import cn.lihongjie.model.ScriptMapReduceResult;
 import cn.lihongjie.model.ScriptPermissions;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,8 +18,19 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -24,6 +43,18 @@ public class ScriptExecutionServiceTest {
     @Inject
     ScriptExecutionService scriptExecutionService;
 
+    @Inject
+    PolyglotEngineProvider engineProvider;
+
+    @Inject
+    ScriptContextPool contextPool;
+
+    @Inject
+    ScriptSourceCache sourceCache;
+
+    @Inject
+    ScriptExecutionScheduler scheduler;
+
     @Nested
     @DisplayName("基础功能测试")
     class BasicFunctionalityTest {
@@ -53,6 +84,17 @@ public class ScriptExecutionServiceTest {
             assertTrue(scriptExecutionService.isLanguageAvailable("python"), "Python应该可用");
             assertFalse(scriptExecutionService.isLanguageAvailable("nonexistent"), "不存在的语言应该返回false");
         }
+
+        @Test
+        @DisplayName("语言别名解析")
+        void testLanguageAlias() {
+            assertTrue(scriptExecutionService.isLanguageAvailable("javascript"), "javascript 别名应该可用");
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(createRequest("javascript", "6 * 7"));
+
+            assertTrue(result.isSuccess(), "使用别名的脚本应该执行成功");
+            assertEquals(42, result.getResult(), "计算结果应该正确");
+        }
     }
 
     @Nested
@@ -103,18 +145,98 @@ public class ScriptExecutionServiceTest {
         @DisplayName("setTimeout 功能测试")
         void testSetTimeoutFunction() {
             ScriptExecutionRequest request = createRequest("js", """
-                var result = 'not_called';
+                var order = [];
                 setTimeout(function() {
-                    result = 'timeout_executed';
+                    order.push('timeout');
+                    console.log('order=' + order.join(','));
                 }, 100);
-                result;
+                order.push('main');
+                'scheduled';
                 """);
 
             ScriptExecutionResult result = scriptExecutionService.executeScript(request);
 
             assertTrue(result.isSuccess(), "setTimeout脚本应该执行成功");
-            // 由于setTimeout是同步忙等待实现，应该执行完回调
-            assertEquals("timeout_executed", result.getResult(), "setTimeout回调应该被执行");
+            // 回调由事件循环在主脚本结束后执行
+            assertEquals("scheduled", result.getResult(), "返回值应该是主脚本的结果");
+            assertTrue(result.getOutput().contains("order=main,timeout"), "setTimeout回调应该在主脚本之后执行");
+            assertTrue(result.getExecutionTime() >= 100, "执行时间应该包含定时器等待时间");
+        }
+
+        @Test
+        @DisplayName("clearTimeout 和 setInterval 测试")
+        void testClearTimeoutAndInterval() {
+            ScriptExecutionRequest request = createRequest("js", """
+                var cancelled = setTimeout(function() { console.log('cancelled timer fired'); }, 10);
+                clearTimeout(cancelled);
+
+                var ticks = 0;
+                var handle = setInterval(function() {
+                    ticks++;
+                    console.log('tick ' + ticks);
+                    if (ticks === 3) clearInterval(handle);
+                }, 20);
+                'started';
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "定时器脚本应该执行成功");
+            assertFalse(result.getOutput().contains("cancelled timer fired"), "被清除的定时器不应该执行");
+            assertTrue(result.getOutput().contains("tick 3"), "setInterval应该执行到被清除为止");
+            assertFalse(result.getOutput().contains("tick 4"), "clearInterval之后不应该再执行");
+        }
+
+        @Test
+        @DisplayName("未清除的 setInterval 受最大执行时间限制")
+        void testUnboundedIntervalTimesOut() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxExecutionTime(500);
+            ScriptExecutionRequest request = createRequestWithPermissions("js",
+                "setInterval(function() {}, 10); 'forever'", permissions);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "永不结束的定时器应该超时");
+            assertEquals(ExecutionStatus.TIMEOUT, result.getStatus(), "状态应该是TIMEOUT");
+            assertTrue(result.getError().contains("timed out"), "错误信息应该指示超时");
+        }
+
+        @Test
+        @DisplayName("异步入口函数返回 Promise 的完成值")
+        void testAsyncEntryFunction() {
+            ScriptExecutionRequest request = createRequest("js", """
+                function sleep(ms) {
+                    return new Promise(function(resolve) { setTimeout(resolve, ms); });
+                }
+                async function compute(x) {
+                    var values = await Promise.all([1, 2, 3].map(async function(i) {
+                        await sleep(100);
+                        return i * x;
+                    }));
+                    return values.reduce(function(a, b) { return a + b; }, 0);
+                }
+                """);
+            request.setEntryFunction("compute");
+            request.setArgs(new Object[]{10});
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "异步函数执行应该成功: " + result.getError());
+            assertEquals(60, result.getResult(), "应该返回 Promise 的完成值");
+        }
+
+        @Test
+        @DisplayName("被拒绝的 Promise 返回错误")
+        void testRejectedPromise() {
+            ScriptExecutionRequest request = createRequest("js", """
+                (async function() { throw new Error('异步失败'); })()
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "被拒绝的 Promise 应该执行失败");
+            assertTrue(result.getError().contains("异步失败"), "错误信息应该包含拒绝原因");
         }
 
         @Test
@@ -131,6 +253,145 @@ public class ScriptExecutionServiceTest {
                       result.getError().toLowerCase().contains("unexpected"), 
                       "错误信息应该指示语法问题");
         }
+
+        @Test
+        @DisplayName("注册脚本并按 scriptId 执行")
+        void testRegisteredScript() {
+            ScriptDefinition definition = new ScriptDefinition();
+            definition.setName("service-test-multiply");
+            definition.setScript("function multiply(a, b) { return a * b; }");
+            definition.setEntryFunction("multiply");
+            ScriptDefinition registered = scriptExecutionService.registerScript(definition);
+
+            ScriptExecutionRequest request = new ScriptExecutionRequest();
+            request.setScriptId("service-test-multiply");
+            request.setArgs(new Object[]{6, 7});
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "按 scriptId 执行应该成功");
+            assertEquals(42, result.getResult(), "应该调用注册的入口函数");
+            assertEquals(registered.getVersion(), request.getScriptVersion(), "未指定版本时使用最新版本");
+            assertNotNull(registered.getHash(), "注册时应该计算脚本哈希");
+        }
+
+        @Test
+        @DisplayName("对象、Map、Set 和 Date 转换为 JSON 结构")
+        void testStructuredResult() {
+            ScriptExecutionRequest request = createRequest("js", """
+                ({
+                    name: "order",
+                    items: [1, "two", null, true],
+                    meta: { price: 2.5, format: function() { return ""; } },
+                    tags: new Map([["k", 1], [2, "v"]]),
+                    ids: new Set([7, 8]),
+                    at: new Date(0)
+                })
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "脚本执行应该成功");
+            Map<?, ?> value = assertInstanceOf(Map.class, result.getResult(), "对象应该转换为 Map");
+            assertEquals("order", value.get("name"));
+            assertEquals(java.util.Arrays.asList(1, "two", null, true), value.get("items"), "数组应该转换为 List");
+            assertEquals(Map.of("price", 2.5), value.get("meta"), "函数成员应该被忽略");
+            assertEquals(Map.of("k", 1, "2", "v"), value.get("tags"), "Map 的键应该转换为字符串");
+            assertEquals(List.of(7, 8), value.get("ids"), "Set 应该转换为 List");
+            assertEquals("1970-01-01T00:00:00Z", value.get("at"), "Date 应该转换为 ISO-8601 字符串");
+        }
+
+        @Test
+        @DisplayName("循环引用和超深嵌套以标记代替")
+        void testCircularAndDeepResult() {
+            ScriptExecutionRequest circular = createRequest("js", """
+                const node = { name: "root" };
+                node.self = node;
+                const shared = { v: 1 };
+                node.pair = [shared, shared];
+                node
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(circular);
+
+            assertTrue(result.isSuccess(), "循环引用的结果应该可以返回");
+            Map<?, ?> value = assertInstanceOf(Map.class, result.getResult());
+            assertEquals(ValueConverter.CIRCULAR, value.get("self"), "循环引用应该以标记代替");
+            assertEquals(List.of(Map.of("v", 1), Map.of("v", 1)), value.get("pair"), "共享但不循环的对象应该完整转换");
+
+            ScriptExecutionRequest deep = createRequest("js", """
+                const root = [];
+                let current = root;
+                for (let i = 0; i < 100000; i++) { const next = []; current.push(next); current = next; }
+                root
+                """);
+
+            result = scriptExecutionService.executeScript(deep);
+
+            assertTrue(result.isSuccess(), "超深嵌套的结果不应该导致栈溢出");
+            Object level = result.getResult();
+            int depth = 0;
+            while (level instanceof List<?> list) {
+                level = list.get(0);
+                depth++;
+            }
+            assertEquals(ValueConverter.TRUNCATED, level, "超过最大深度的部分应该以标记代替");
+            assertTrue(depth < 100000, "转换深度应该受到限制");
+        }
+
+        @Test
+        @DisplayName("类型化数组批量转换，基本类型数组参数以类型化数组传入")
+        void testTypedArrays() {
+            ScriptExecutionRequest request = createRequest("js", """
+                const values = new Float64Array(64);
+                for (let i = 0; i < values.length; i++) values[i] = i / 2;
+                ({ values: values.subarray(4, 36), bytes: new Uint8Array([1, 2, 255]).buffer, counts: new Uint32Array(20).fill(4294967295) })
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "脚本执行应该成功");
+            Map<?, ?> value = assertInstanceOf(Map.class, result.getResult());
+            double[] values = assertInstanceOf(double[].class, value.get("values"), "Float64Array 应该批量读取为 double[]");
+            assertEquals(32, values.length);
+            assertEquals(2.0, values[0], "子数组应该从正确的偏移开始");
+            assertArrayEquals(new int[]{1, 2, 255}, (int[]) value.get("bytes"), "ArrayBuffer 应该读取为无符号字节");
+            assertEquals(4294967295L, ((long[]) value.get("counts"))[0], "Uint32Array 应该读取为 long[]");
+
+            ScriptExecutionRequest input = createRequest("js", """
+                function sum(values) {
+                    let total = 0;
+                    for (let i = 0; i < values.length; i++) total += values[i];
+                    return [Object.prototype.toString.call(values), total];
+                }
+                """);
+            input.setEntryFunction("sum");
+            input.setArgs(new Object[]{new double[]{1.5, 2.5, 3.0}});
+
+            result = scriptExecutionService.executeScript(input);
+
+            assertTrue(result.isSuccess(), "double[] 参数应该可以在沙箱中读取");
+            assertEquals(List.of("[object Float64Array]", 7), result.getResult(), "double[] 参数应该以 Float64Array 传入");
+        }
+
+        @Test
+        @DisplayName("JSON 参数以代理传入，读取时才转换")
+        void testJsonArguments() throws IOException {
+            ScriptExecutionRequest request = createRequest("js", """
+                function summarize(order) {
+                    order.items[0].qty = 10;
+                    return [order.customer.name, order.items.length, order.items[0].qty, order.missing === undefined, Object.keys(order)];
+                }
+                """);
+            request.setEntryFunction("summarize");
+            request.setArgs(new Object[]{new ObjectMapper().readTree("""
+                {"customer": {"name": "alice"}, "items": [{"sku": "a", "qty": 1}, {"sku": "b", "qty": 2}]}
+                """)});
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "JSON 参数应该可以在沙箱中读取");
+            assertEquals(List.of("alice", 2, 10, true, List.of("customer", "items")), result.getResult());
+        }
     }
 
     @Nested
@@ -206,6 +467,51 @@ public class ScriptExecutionServiceTest {
             assertTrue(result.isSuccess(), "Python数据结构操作应该成功");
             assertEquals(15, result.getResult(), "列表求和结果应该正确");
         }
+
+        @Test
+        @DisplayName("字典、对象和集合转换为 JSON 结构")
+        void testPythonStructuredResult() {
+            ScriptExecutionRequest request = createRequest("python", """
+                class Point:
+                    def __init__(self, x, y):
+                        self.x = x
+                        self.y = y
+
+                    def norm(self):
+                        return self.x + self.y
+
+                {"point": Point(1, 2), 3: "int key", "tuple": (1, 2), "set": {5}, "none": None}
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "Python脚本执行应该成功");
+            Map<?, ?> value = assertInstanceOf(Map.class, result.getResult(), "字典应该转换为 Map");
+            assertEquals(Map.of("x", 1, "y", 2), value.get("point"), "对象应该转换为属性 Map，方法被忽略");
+            assertEquals("int key", value.get("3"), "非字符串键应该转换为字符串");
+            assertEquals(List.of(1, 2), value.get("tuple"));
+            assertEquals(List.of(5), value.get("set"));
+            assertTrue(value.containsKey("none") && value.get("none") == null);
+        }
+
+        @Test
+        @DisplayName("bytes 和 array 批量转换")
+        void testPythonBuffers() {
+            ScriptExecutionRequest request = createRequest("python", """
+                import array
+                {"bytes": bytes(range(250, 256)) * 4, "doubles": array.array('d', [x / 4 for x in range(20)])}
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "Python脚本执行应该成功");
+            Map<?, ?> value = assertInstanceOf(Map.class, result.getResult());
+            int[] bytes = assertInstanceOf(int[].class, value.get("bytes"), "bytes 应该批量读取为 int[]");
+            assertEquals(24, bytes.length);
+            assertEquals(255, bytes[5], "字节应该按无符号读取");
+            double[] doubles = assertInstanceOf(double[].class, value.get("doubles"), "array('d') 应该批量读取为 double[]");
+            assertEquals(4.75, doubles[19]);
+        }
     }
 
     @Nested
@@ -369,6 +675,328 @@ public class ScriptExecutionServiceTest {
             assertTrue(callbackCount.get() > 0, "应该触发输出回调");
             assertTrue(outputBuffer.toString().contains("输出行"), "回调应该接收到输出内容");
         }
+
+        @Test
+        @DisplayName("执行线程池饱和时快速拒绝")
+        @Timeout(10)
+        void testSchedulerRejectsWhenSaturated() throws Exception {
+            Map<String, Object> stats = scheduler.getStats();
+            int capacity = (Integer) stats.get("maxConcurrency") + (Integer) stats.get("queueCapacity");
+            CountDownLatch release = new CountDownLatch(1);
+            List<CompletableFuture<String>> accepted = new ArrayList<>();
+
+            try {
+                for (int i = 0; i < capacity; i++) {
+                    accepted.add(scheduler.submit(() -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "done";
+                    }));
+                }
+
+                CompletableFuture<String> overflow = scheduler.submit(() -> "overflow");
+                ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> overflow.get(1, TimeUnit.SECONDS), "超出容量的任务应该被立即拒绝");
+                assertInstanceOf(ScriptExecutionRejectedException.class, exception.getCause());
+            } finally {
+                release.countDown();
+            }
+
+            for (CompletableFuture<String> future : accepted) {
+                assertEquals("done", future.get(5, TimeUnit.SECONDS), "已接受的任务应该正常完成");
+            }
+        }
+
+        @Test
+        @DisplayName("虚拟线程模式下超出上下文池容量的执行不等待上下文")
+        @Timeout(60)
+        void testVirtualThreadsBeyondContextPoolSize() throws Exception {
+            ScriptExecutionScheduler virtualScheduler = new ScriptExecutionScheduler();
+            virtualScheduler.configuredMaxConcurrency = Optional.empty();
+            virtualScheduler.queueCapacity = 64;
+            virtualScheduler.queueTimeout = Duration.ofSeconds(5);
+            virtualScheduler.virtualThreads = true;
+            virtualScheduler.pinningDiagnostics = false;
+            virtualScheduler.pinningThreshold = Duration.ofMillis(20);
+            virtualScheduler.init();
+
+            // 预热 Engine，耗时只反映 sleep 和上下文获取
+            scriptExecutionService.executeScript(createRequest("js", "1"));
+            int executions = ((Number) contextPool.getStats().get("maxSize")).intValue() + 8;
+            long sleepMillis = 1000;
+            List<CompletableFuture<ScriptExecutionResult>> futures = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            try {
+                for (int i = 0; i < executions; i++) {
+                    futures.add(virtualScheduler.submit(() -> scriptExecutionService.executeScript(createRequest("js",
+                        "new Promise(resolve => setTimeout(() => resolve('done'), " + sleepMillis + "))"))));
+                }
+                for (CompletableFuture<ScriptExecutionResult> future : futures) {
+                    ScriptExecutionResult result = future.get(30, TimeUnit.SECONDS);
+                    assertTrue(result.isSuccess(), "虚拟线程上的执行应该成功: " + result.getError());
+                    assertEquals("done", result.getResult());
+                }
+            } finally {
+                virtualScheduler.shutdown();
+            }
+
+            // 超出池容量的执行若等待借出中的上下文，至少要多等一个 acquire-timeout（2s）
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed < sleepMillis + 2000,
+                "超出池容量的执行应该立即使用临时上下文并发 sleep，实际耗时 " + elapsed + "ms");
+        }
+
+        @Test
+        @DisplayName("虚拟线程上无法强制的预算在结果中报告")
+        @Timeout(30)
+        void testVirtualThreadsReportUnenforcedBudgets() throws Exception {
+            ScriptExecutionScheduler virtualScheduler = new ScriptExecutionScheduler();
+            virtualScheduler.configuredMaxConcurrency = Optional.empty();
+            virtualScheduler.queueCapacity = 64;
+            virtualScheduler.queueTimeout = Duration.ofSeconds(5);
+            virtualScheduler.virtualThreads = true;
+            virtualScheduler.pinningDiagnostics = false;
+            virtualScheduler.pinningThreshold = Duration.ofMillis(20);
+            virtualScheduler.init();
+
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxCpuTime(5000);
+            ScriptExecutionResult result;
+            try {
+                result = virtualScheduler.submit(() -> scriptExecutionService.executeScript(
+                    createRequestWithPermissions("js", "1 + 1", permissions))).get(10, TimeUnit.SECONDS);
+                assertEquals(List.of("maxCpuTime", "maxAllocatedBytes"), virtualScheduler.getStats().get("unenforcedBudgets"),
+                    "虚拟线程模式的统计信息应该列出不生效的预算");
+            } finally {
+                virtualScheduler.shutdown();
+            }
+            assertTrue(result.isSuccess(), "虚拟线程上的执行应该成功: " + result.getError());
+            assertEquals(List.of("maxCpuTime", "maxAllocatedBytes"), result.getUnenforcedLimits(),
+                "虚拟线程上设置的CPU时间和内存分配预算应该报告为未强制");
+
+            // 平台线程上预算都会强制
+            ScriptExecutionResult platform = scriptExecutionService.executeScript(
+                createRequestWithPermissions("js", "1 + 1", permissions));
+            assertTrue(platform.isSuccess(), "JS脚本执行应该成功");
+            assertNull(platform.getUnenforcedLimits(), "平台线程上的预算应该全部生效");
+        }
+
+        @Test
+        @DisplayName("平台线程上超出上下文池容量的执行等待上下文归还")
+        @Timeout(60)
+        void testPlatformThreadsWaitForContextPool() throws Exception {
+            int maxSize = ((Number) contextPool.getStats().get("maxSize")).intValue();
+            ScriptExecutionScheduler platformScheduler = new ScriptExecutionScheduler();
+            platformScheduler.configuredMaxConcurrency = Optional.of(maxSize + 4);
+            platformScheduler.queueCapacity = 64;
+            platformScheduler.queueTimeout = Duration.ofSeconds(5);
+            platformScheduler.virtualThreads = false;
+            platformScheduler.pinningDiagnostics = false;
+            platformScheduler.pinningThreshold = Duration.ofMillis(20);
+            platformScheduler.init();
+
+            scriptExecutionService.executeScript(createRequest("js", "1"));
+            long overflows = ((Number) contextPool.getStats().get("overflows")).longValue();
+            List<CompletableFuture<ScriptExecutionResult>> futures = new ArrayList<>();
+            try {
+                for (int i = 0; i < maxSize + 4; i++) {
+                    futures.add(platformScheduler.submit(() -> scriptExecutionService.executeScript(createRequest("js",
+                        "new Promise(resolve => setTimeout(() => resolve('done'), 300))"))));
+                }
+                for (CompletableFuture<ScriptExecutionResult> future : futures) {
+                    ScriptExecutionResult result = future.get(30, TimeUnit.SECONDS);
+                    assertTrue(result.isSuccess(), "平台线程上的执行应该成功: " + result.getError());
+                }
+            } finally {
+                platformScheduler.shutdown();
+            }
+
+            assertEquals(overflows, ((Number) contextPool.getStats().get("overflows")).longValue(),
+                "平台线程上池已满时应该等待上下文归还，而不是创建临时上下文");
+        }
+
+        @Test
+        @DisplayName("取消正在运行的执行")
+        @Timeout(10)
+        void testCancelRunningExecution() throws Exception {
+            ScriptExecutionRequest request = createRequest("js", "while (true) {}");
+            request.setExecutionId("cancel-test-" + System.nanoTime());
+
+            CompletableFuture<ScriptExecutionResult> future =
+                scriptExecutionService.executeScriptAsync(request, null);
+            while (scriptExecutionService.getRunningExecutions().stream()
+                    .noneMatch(execution -> request.getExecutionId().equals(execution.get("executionId")))) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(scriptExecutionService.cancel(request.getExecutionId()), "应该找到正在运行的执行");
+            ScriptExecutionResult result = future.get(5, TimeUnit.SECONDS);
+
+            assertFalse(result.isSuccess(), "被取消的执行应该失败");
+            assertEquals(ExecutionStatus.CANCELLED, result.getStatus(), "状态应该为 CANCELLED");
+            assertEquals(request.getExecutionId(), result.getExecutionId(), "结果应该带有执行ID");
+            assertFalse(scriptExecutionService.cancel(request.getExecutionId()), "已结束的执行不能再取消");
+        }
+
+        @Test
+        @DisplayName("执行ID重复时不回调受理")
+        @Timeout(10)
+        void testAcceptedCallbackSkipsDuplicateExecutionId() throws Exception {
+            String executionId = "accept-test-" + System.nanoTime();
+            ScriptExecutionRequest running = createRequest("js", "while (true) {}");
+            running.setExecutionId(executionId);
+            AtomicInteger accepted = new AtomicInteger();
+            CompletableFuture<ScriptExecutionResult> future =
+                scriptExecutionService.executeScriptAsync(running, null, accepted::incrementAndGet);
+            assertEquals(1, accepted.get(), "受理的执行应该在提交前回调");
+
+            ScriptExecutionRequest duplicate = createRequest("js", "1");
+            duplicate.setExecutionId(executionId);
+            ScriptExecutionResult rejected =
+                scriptExecutionService.executeScriptAsync(duplicate, null, accepted::incrementAndGet).get(5, TimeUnit.SECONDS);
+            assertFalse(rejected.isSuccess(), "重复的执行ID应该被拒绝");
+            assertEquals(1, accepted.get(), "被拒绝的执行不应该回调受理");
+
+            assertTrue(scriptExecutionService.cancel(executionId), "应该能取消已受理的执行");
+            assertEquals(ExecutionStatus.CANCELLED, future.get(5, TimeUnit.SECONDS).getStatus());
+        }
+
+        @Test
+        @DisplayName("异步作业提交、增量输出和结果")
+        @Timeout(10)
+        void testSubmitJob() throws Exception {
+            ScriptExecutionRequest request = createRequest("js", """
+                console.log('first');
+                console.log('second');
+                6 * 7;
+                """);
+
+            ScriptJob job = scriptExecutionService.submitJob(request);
+            assertNotNull(job.getExecutionId(), "应该分配执行ID");
+            assertSame(job, scriptExecutionService.getJob(job.getExecutionId()), "应该能按执行ID查询作业");
+            while (job.getState() != JobState.FINISHED) {
+                Thread.sleep(10);
+            }
+
+            ScriptExecutionResult result = job.getResult();
+            assertTrue(result.isSuccess(), "作业应该执行成功");
+            assertEquals(42, result.getResult(), "作业结果应该正确");
+            assertEquals(job.getExecutionId(), result.getExecutionId(), "结果应该带有执行ID");
+
+            ScriptJobOutput all = job.readOutput(0);
+            assertTrue(all.getOutput().contains("first") && all.getOutput().contains("second"), "应该保存作业输出");
+            ScriptJobOutput rest = job.readOutput(all.getOutput().indexOf("second"));
+            assertTrue(rest.getOutput().startsWith("second"), "应该从指定位置读取输出");
+            assertEquals(all.getNextOffset(), rest.getNextOffset(), "下次读取位置应该为输出末尾");
+
+            assertThrows(IllegalStateException.class, () -> scriptExecutionService.submitJob(request),
+                "执行ID已被作业占用时应该拒绝");
+        }
+
+        @Test
+        @DisplayName("批量调用入口函数")
+        @Timeout(10)
+        void testBatchInvocation() throws Exception {
+            ScriptBatchRequest request = new ScriptBatchRequest("""
+                var calls = 0;
+                function multiply(a, b) {
+                    calls++;
+                    if (a < 0) throw new Error('negative');
+                    return a * b;
+                }
+                """, "js", "multiply", ScriptPermissions.createSandbox(),
+                List.of(new Object[]{2, 3}, new Object[]{-1, 3}, new Object[]{4, 5}));
+
+            ScriptExecutionResult result = scriptExecutionService.executeBatchAsync(request).get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.isSuccess(), "单项失败不应该使整个批次失败");
+            @SuppressWarnings("unchecked")
+            List<ScriptBatchItemResult> items = (List<ScriptBatchItemResult>) result.getResult();
+            assertEquals(3, items.size(), "每组参数都应该有结果");
+            assertEquals(6, items.get(0).getResult());
+            assertFalse(items.get(1).isSuccess(), "抛出异常的调用应该失败");
+            assertTrue(items.get(1).getError().contains("negative"), "应该记录该项的错误信息");
+            assertEquals(20, items.get(2).getResult(), "失败项之后的调用应该继续执行");
+
+            request.setExecutionId(null);
+            request.setStopOnError(true);
+            result = scriptExecutionService.executeBatchAsync(request).get(5, TimeUnit.SECONDS);
+            assertEquals(2, ((List<?>) result.getResult()).size(), "stopOnError 时应该在第一次失败后停止");
+
+            assertThrows(IllegalArgumentException.class, () -> scriptExecutionService.executeBatchAsync(
+                new ScriptBatchRequest("1", "js", null, null, List.<Object[]>of(new Object[0]))),
+                "未指定入口函数时应该拒绝");
+        }
+
+        @Test
+        @DisplayName("并行批量调用与归约")
+        @Timeout(20)
+        void testParallelBatchWithReduce() throws Exception {
+            List<Object[]> argsList = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                argsList.add(new Object[]{i});
+            }
+            ScriptBatchRequest request = new ScriptBatchRequest("""
+                function square(x) { return x * x; }
+                function sum(values) {
+                    var total = 0;
+                    for (var i = 0; i < values.length; i++) total += values[i];
+                    return total;
+                }
+                """, "js", "square", ScriptPermissions.createSandbox(), argsList);
+            request.setParallelism(4);
+
+            ScriptExecutionResult result = scriptExecutionService.executeBatchAsync(request).get(15, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess(), "并行批量调用应该成功");
+            @SuppressWarnings("unchecked")
+            List<ScriptBatchItemResult> items = (List<ScriptBatchItemResult>) result.getResult();
+            assertEquals(20, items.size(), "每组参数都应该有结果");
+            for (int i = 0; i < items.size(); i++) {
+                assertEquals(i, items.get(i).getIndex(), "结果应该按参数组顺序排列");
+                assertEquals((i + 1) * (i + 1), items.get(i).getResult());
+            }
+
+            request.setExecutionId(null);
+            request.setReduceFunction("sum");
+            result = scriptExecutionService.executeBatchAsync(request).get(15, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess(), "归约应该成功");
+            ScriptMapReduceResult reduced = (ScriptMapReduceResult) result.getResult();
+            assertEquals(2870, reduced.getReduced(), "1到20的平方和应该等于2870");
+            assertEquals(20, reduced.getItems());
+            assertTrue(reduced.getFailures().isEmpty(), "不应该有失败的调用");
+        }
+
+        @Test
+        @DisplayName("并发的相同可缓存执行只运行一次")
+        void testSingleFlight() throws Exception {
+            String script = """
+                function report(id) {
+                    var total = 0;
+                    for (var i = 0; i < 2000000; i++) total += i % 7;
+                    return id + ':' + total;
+                }
+                """;
+            List<CompletableFuture<ScriptExecutionResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                ScriptExecutionRequest request = new ScriptExecutionRequest(script, "js", "report", null, new Object[]{"dashboard"});
+                request.setCacheable(true);
+                futures.add(scriptExecutionService.executeScriptAsync(request, null));
+            }
+
+            int executed = 0;
+            for (CompletableFuture<ScriptExecutionResult> future : futures) {
+                ScriptExecutionResult result = future.get(30, TimeUnit.SECONDS);
+                assertTrue(result.isSuccess(), "共享的执行应该成功");
+                assertEquals("dashboard:5999995", result.getResult(), "所有请求应该得到相同的结果");
+                if (!result.isCached()) {
+                    executed++;
+                }
+            }
+            assertEquals(1, executed, "相同的请求只应该实际执行一次");
+        }
     }
 
     @Nested
@@ -415,6 +1043,121 @@ public class ScriptExecutionServiceTest {
             assertFalse(result.isSuccess(), "抛出异常的脚本应该执行失败");
             assertNotNull(result.getError(), "应该捕获到错误信息");
             assertTrue(result.getError().contains("故意抛出的测试错误"), "错误信息应该包含原始错误内容");
+            assertEquals(ExecutionStatus.ERROR, result.getStatus(), "脚本异常的状态应该是ERROR");
+        }
+
+        @Test
+        @DisplayName("死循环被看门狗中断")
+        void testInfiniteLoopTimesOut() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxExecutionTime(1000);
+            ScriptExecutionRequest request = createRequestWithPermissions("js",
+                "console.log('before loop'); while (true) {}", permissions);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "死循环应该被中断");
+            assertEquals(ExecutionStatus.TIMEOUT, result.getStatus(), "状态应该是TIMEOUT");
+            assertTrue(result.getError().contains("timed out"), "错误信息应该指示超时");
+            assertTrue(result.getOutput().contains("before loop"), "应该保留中断前的输出");
+
+            // 被中断的上下文不会归还到池中，后续执行不受影响
+            ScriptExecutionResult next = scriptExecutionService.executeScript(
+                createRequestWithPermissions("js", "1 + 1", permissions));
+            assertTrue(next.isSuccess(), "中断后的执行应该正常");
+            assertEquals(ExecutionStatus.SUCCESS, next.getStatus());
+        }
+
+        @Test
+        @DisplayName("Python 死循环被看门狗中断")
+        void testPythonInfiniteLoopTimesOut() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxExecutionTime(1000);
+            ScriptExecutionRequest request = createRequestWithPermissions("python",
+                "while True:\n    pass", permissions);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "死循环应该被中断");
+            assertEquals(ExecutionStatus.TIMEOUT, result.getStatus(), "状态应该是TIMEOUT");
+        }
+
+        @Test
+        @DisplayName("超过内存分配预算被中断")
+        void testMemoryLimitExceeded() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxAllocatedBytes(16 * 1024 * 1024);
+            ScriptExecutionRequest request = createRequestWithPermissions("js", """
+                var chunks = [];
+                while (true) {
+                    chunks.push(new Array(1000).fill(1));
+                }
+                """, permissions);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "超过内存预算的脚本应该被中断");
+            assertEquals(ExecutionStatus.MEMORY_LIMIT, result.getStatus(), "状态应该是MEMORY_LIMIT");
+            assertTrue(result.getError().contains("memory limit"), "错误信息应该指示内存超限");
+            assertTrue(result.getMemoryUsed() > 16 * 1024 * 1024, "应该报告实际分配的内存");
+        }
+
+        @Test
+        @DisplayName("默认沙盒权限下分配量大但存活对象少的脚本不被中断")
+        void testLowRetentionScriptWithinDefaultLimits() {
+            ScriptExecutionRequest request = createRequest("js", """
+                var total = 0;
+                for (var i = 0; i < 200000; i++) {
+                    var chunk = new Array(100).fill(i);
+                    total += chunk.length;
+                }
+                total;
+                """);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertTrue(result.isSuccess(), "临时对象会被回收，脚本不应该因内存预算被中断: " + result.getError());
+            assertEquals(20000000, result.getResult());
+            assertTrue(result.getMemoryUsed() > 128 * 1024 * 1024,
+                    "累计分配量应该超过已废弃的 maxMemoryUsage 默认值");
+            assertTrue(result.getMemoryUsed() < ScriptPermissions.createSandbox().getMaxAllocatedBytes(),
+                    "累计分配量应该在默认的 maxAllocatedBytes 之内");
+        }
+
+        @Test
+        @DisplayName("超过语句数限制被中断")
+        void testStatementLimitExceeded() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxStatements(1000);
+            String script = "var total = 0; for (var i = 0; i < LIMIT; i++) { total += i; } total";
+
+            ScriptExecutionResult small = scriptExecutionService.executeScript(
+                createRequestWithPermissions("js", script.replace("LIMIT", "100"), permissions));
+            assertTrue(small.isSuccess(), "语句数在限制内的脚本应该执行成功");
+
+            // 复用的上下文在借出时重新计数，多次执行不会累积
+            ScriptExecutionResult again = scriptExecutionService.executeScript(
+                createRequestWithPermissions("js", script.replace("LIMIT", "100"), permissions));
+            assertTrue(again.isSuccess(), "再次执行应该重新计数");
+
+            ScriptExecutionResult large = scriptExecutionService.executeScript(
+                createRequestWithPermissions("js", script.replace("LIMIT", "100000"), permissions));
+            assertFalse(large.isSuccess(), "超过语句数限制的脚本应该被中断");
+            assertEquals(ExecutionStatus.STATEMENT_LIMIT, large.getStatus(), "状态应该是STATEMENT_LIMIT");
+        }
+
+        @Test
+        @DisplayName("超过CPU时间预算被中断")
+        void testCpuTimeLimitExceeded() {
+            ScriptPermissions permissions = ScriptPermissions.createSandbox();
+            permissions.setMaxCpuTime(500);
+            ScriptExecutionRequest request = createRequestWithPermissions("js", "while (true) {}", permissions);
+
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+            assertFalse(result.isSuccess(), "超过CPU时间预算的脚本应该被中断");
+            assertEquals(ExecutionStatus.CPU_TIME_LIMIT, result.getStatus(), "状态应该是CPU_TIME_LIMIT");
+            assertTrue(result.getCpuTime() >= 500, "应该报告实际消耗的CPU时间");
         }
 
         @Test
@@ -427,6 +1170,23 @@ public class ScriptExecutionServiceTest {
             assertNotNull(result.getError(), "应该有错误信息");
         }
 
+        @Test
+        @DisplayName("注册语法错误的脚本和执行未注册的脚本")
+        void testInvalidRegisteredScript() {
+            ScriptDefinition definition = new ScriptDefinition();
+            definition.setName("service-test-broken");
+            definition.setScript("function broken( {");
+
+            assertThrows(IllegalArgumentException.class, () -> scriptExecutionService.registerScript(definition),
+                    "语法错误的脚本应该在注册时被拒绝");
+            assertNull(scriptExecutionService.getRegisteredScript("service-test-broken", null), "注册失败的脚本不应该保存");
+
+            ScriptExecutionRequest request = new ScriptExecutionRequest();
+            request.setScriptId("service-test-missing");
+            assertThrows(ScriptNotFoundException.class, () -> scriptExecutionService.executeScript(request),
+                    "未注册的脚本应该抛出 ScriptNotFoundException");
+        }
+
         @Test
         @DisplayName("执行时间统计")
         void testExecutionTimeTracking() {
@@ -446,6 +1206,7 @@ public class ScriptExecutionServiceTest {
             assertTrue(result.isSuccess(), "脚本应该执行成功");
             assertTrue(result.getExecutionTime() > 0, "执行时间应该大于0");
             assertTrue(result.getExecutionTime() <= actualTime + 100, "记录的执行时间应该合理");
+            assertTrue(result.getMemoryUsed() > 0, "应该记录执行期间分配的内存");
         }
     }
 
@@ -453,6 +1214,221 @@ public class ScriptExecutionServiceTest {
     @DisplayName("性能和资源测试")
     class PerformanceTest {
 
+        @Test
+        @DisplayName("共享 Engine 复用")
+        void testSharedEngineReuse() {
+            ScriptPermissions sandbox = ScriptPermissions.createSandbox();
+            ScriptPermissions permissive = ScriptPermissions.createPermissive();
+
+            assertSame(engineProvider.getEngine(sandbox), engineProvider.getEngine(ScriptPermissions.createSandbox()),
+                      "相同主机访问配置应该复用同一个 Engine");
+            assertNotSame(engineProvider.getEngine(sandbox), engineProvider.getEngine(permissive),
+                         "不同主机访问配置应该使用不同的 Engine");
+
+            for (int i = 0; i < 3; i++) {
+                ScriptExecutionRequest request = createRequest("js", "function square(x) { return x * x; }");
+                request.setEntryFunction("square");
+                request.setArgs(new Object[]{i});
+
+                ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+
+                assertTrue(result.isSuccess(), "共享 Engine 上的重复执行应该成功");
+                assertEquals(i * i, result.getResult(), "每次执行结果应该相互独立");
+            }
+        }
+
+        @Test
+        @DisplayName("上下文池复用与隔离")
+        void testContextPoolReuseAndIsolation() {
+            // 顶层 let 声明无法从全局清理，上下文应被退役而不是复用
+            for (int i = 0; i < 2; i++) {
+                ScriptExecutionResult result = scriptExecutionService.executeScript(
+                    createRequest("js", "let pooled = " + i + "; pooled"));
+                assertTrue(result.isSuccess(), "重复声明同名顶层变量不应该失败: " + result.getError());
+                assertEquals(i, result.getResult(), "结果应该来自本次执行");
+            }
+
+            // 可删除的全局变量在归还时被清理
+            scriptExecutionService.executeScript(createRequest("js", "leaked = 42"));
+            ScriptExecutionResult result = scriptExecutionService.executeScript(
+                createRequest("js", "typeof leaked"));
+            assertTrue(result.isSuccess(), "JS脚本执行应该成功");
+            assertEquals("undefined", result.getResult(), "上一次执行的全局变量不应该泄漏");
+
+            Map<String, Object> stats = contextPool.getStats();
+            assertTrue(((Number) stats.get("hits")).longValue() > 0, "上下文池应该有命中");
+        }
+
+        @Test
+        @DisplayName("指定入口函数的脚本顶层声明不会阻止上下文复用")
+        void testContextPoolReuseWithEntryFunction() {
+            String script = "let factor = 2; var secret = 'tenant-a'; const offset = 1;\n"
+                + "function main(x) { return x * factor + offset; }";
+            ScriptExecutionRequest request = createRequest("js", script);
+            request.setEntryFunction("main");
+            request.setArgs(new Object[]{1});
+            ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+            assertTrue(result.isSuccess(), "JS脚本执行应该成功: " + result.getError());
+            assertEquals(3, result.getResult());
+
+            Map<String, Object> before = contextPool.getStats();
+            for (int i = 0; i < 2; i++) {
+                request = createRequest("js", script);
+                request.setEntryFunction("main");
+                request.setArgs(new Object[]{i});
+                result = scriptExecutionService.executeScript(request);
+                assertTrue(result.isSuccess(), "重复执行同一脚本不应该失败: " + result.getError());
+                assertEquals(i * 2 + 1, result.getResult(), "结果应该来自本次执行");
+            }
+            Map<String, Object> after = contextPool.getStats();
+            assertTrue(((Number) after.get("hits")).longValue() >= ((Number) before.get("hits")).longValue() + 2,
+                "入口函数脚本的上下文应该被复用");
+            assertEquals(before.get("retired"), after.get("retired"), "入口函数脚本的上下文不应该被退役");
+
+            result = scriptExecutionService.executeScript(createRequest("js", "[typeof main, typeof secret, typeof factor]"));
+            assertTrue(result.isSuccess(), "JS脚本执行应该成功: " + result.getError());
+            assertEquals(List.of("undefined", "undefined", "undefined"), result.getResult(), "顶层声明不应该泄漏");
+
+            request = createRequest("js", "function other() { return 1; }");
+            request.setEntryFunction("main");
+            result = scriptExecutionService.executeScript(request);
+            assertFalse(result.isSuccess(), "入口函数不存在时应该失败");
+            assertTrue(result.getError().contains("Function 'main' not found"), "错误信息应该指出入口函数不存在: " + result.getError());
+        }
+
+        @Test
+        @DisplayName("脚本修改的内置对象不会泄漏到下一次执行")
+        void testContextPoolBuiltinIsolation() {
+            ScriptExecutionResult result = scriptExecutionService.executeScript(createRequest("js",
+                "Math.floor = () => 'tenant-a'; JSON.stringify = () => 'hijacked'; Object.prototype.leak = 'A'; 1"));
+            assertTrue(result.isSuccess(), "JS脚本执行应该成功: " + result.getError());
+            result = scriptExecutionService.executeScript(createRequest("js",
+                "Math.floor(1.5) + ' ' + JSON.stringify(1) + ' ' + ({}).leak"));
+            assertTrue(result.isSuccess(), "JS脚本执行应该成功: " + result.getError());
+            assertEquals("1 1 undefined", result.getResult(), "被修改的内置对象和原型不应该泄漏");
+
+            // Python 每次执行使用新的上下文，模块属性和模块内容器的修改都不会保留
+            result = scriptExecutionService.executeScript(createRequest("python",
+                "import json, json.decoder, builtins\njson.dumps = lambda *args: 'hijacked'\nbuiltins.len = lambda x: -1\n"
+                    + "json.decoder.BACKSLASH['secret'] = 'tenant-a'\n1"));
+            assertTrue(result.isSuccess(), "Python脚本执行应该成功: " + result.getError());
+            result = scriptExecutionService.executeScript(createRequest("python",
+                "import json, json.decoder\n[json.dumps(1), len([1]), 'secret' in json.decoder.BACKSLASH]"));
+            assertTrue(result.isSuccess(), "Python脚本执行应该成功: " + result.getError());
+            assertEquals(List.of("1", 1, false), result.getResult(), "被修改的模块、容器和内置函数不应该泄漏");
+
+            // 未修改内置对象的上下文仍然复用
+            long hits = ((Number) contextPool.getStats().get("hits")).longValue();
+            scriptExecutionService.executeScript(createRequest("js", "JSON.stringify({a: 1})"));
+            scriptExecutionService.executeScript(createRequest("js", "JSON.stringify({a: 2})"));
+            assertTrue(((Number) contextPool.getStats().get("hits")).longValue() > hits, "未修改内置对象的上下文应该被复用");
+        }
+
+        @Test
+        @DisplayName("注册表存储从检查点索引和日志尾部恢复")
+        void testRegistryStoreRecovery(@TempDir Path directory) throws IOException {
+            ScriptRegistryStore store = new ScriptRegistryStore(directory);
+            assertTrue(store.open(10).isEmpty(), "新目录中没有已注册脚本");
+            ScriptRegistryStore.StoredScript first = store.append(new ScriptDefinition(
+                    "persisted", 1, "js", "function f() { return 1; }", "f", null, "h1", 1L));
+            store.checkpoint(List.of(first));
+            store.append(new ScriptDefinition("persisted", 2, "js", "function f() { return 2; }", "f", null, "h2", 2L));
+            store.append(new ScriptDefinition("removed", 1, "js", "function g() {}", "g", null, "h3", 3L));
+            store.appendRemove("removed", null);
+            store.close();
+
+            ScriptRegistryStore reopened = new ScriptRegistryStore(directory);
+            List<ScriptRegistryStore.StoredScript> scripts = reopened.open(10);
+            assertEquals(2, scripts.size(), "应该恢复索引中的版本和日志尾部追加的版本");
+            assertEquals(3, reopened.getPendingRecords(), "只重放检查点之后的日志记录");
+            ScriptRegistryStore.StoredScript indexed = scripts.get(0);
+            assertNull(indexed.definition().getScript(), "索引中的版本只有元数据");
+            assertEquals("function f() { return 1; }", reopened.load(indexed.offset(), indexed.length()).getScript(),
+                    "脚本内容应该按位置从日志读取");
+            assertEquals("function f() { return 2; }", scripts.get(1).definition().getScript());
+            reopened.close();
+        }
+
+        @Test
+        @DisplayName("压缩日志时进行中的读取不会读到替换后的日志")
+        @Timeout(30)
+        void testRegistryStoreLoadDuringCompaction(@TempDir Path directory) throws Exception {
+            ScriptRegistryStore store = new ScriptRegistryStore(directory);
+            store.open(10);
+            for (int i = 0; i < 50; i++) {
+                store.append(new ScriptDefinition("dead", i + 1, "js", "function f() { return " + i + "; }", "f", null, "d" + i, i));
+            }
+            ScriptRegistryStore.StoredScript live = store.append(
+                    new ScriptDefinition("live", 1, "js", "function f() { return 'live'; }", "f", null, "l1", 1L));
+
+            List<CompletableFuture<Void>> loaders = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                loaders.add(CompletableFuture.runAsync(() -> {
+                    started.countDown();
+                    while (true) {
+                        try {
+                            assertEquals("function f() { return 'live'; }", store.load(live.offset(), live.length()).getScript());
+                        } catch (UncheckedIOException e) {
+                            assertTrue(e.getCause().getMessage().contains("closed"), "关闭前的读取不应该失败: " + e.getCause().getMessage());
+                            return;
+                        }
+                    }
+                }));
+            }
+            started.await();
+            store.compactAndClose(List.of(live));
+            for (CompletableFuture<Void> loader : loaders) {
+                loader.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(1, ((Number) store.getStats().get("compactions")).intValue(), "死记录超过存活记录时应该压缩");
+        }
+
+        @Test
+        @DisplayName("可缓存的执行命中结果缓存")
+        void testResultCache() {
+            String script = "function price(amount) { console.log('pricing'); return amount * 2; }";
+            ScriptExecutionRequest first = new ScriptExecutionRequest(script, "js", "price", null, new Object[]{21});
+            first.setCacheable(true);
+            ScriptExecutionResult computed = scriptExecutionService.executeScript(first);
+            assertTrue(computed.isSuccess(), "首次执行应该成功");
+            assertFalse(computed.isCached(), "首次执行不应该命中缓存");
+
+            ScriptExecutionRequest repeated = new ScriptExecutionRequest(script, "js", "price", null, new Object[]{21});
+            repeated.setCacheable(true);
+            ScriptExecutionResult cached = scriptExecutionService.executeScript(repeated);
+            assertTrue(cached.isCached(), "相同的可缓存请求应该命中缓存");
+            assertEquals(42, cached.getResult(), "缓存结果应该与首次执行相同");
+            assertEquals(computed.getOutput(), cached.getOutput(), "缓存结果应该包含首次执行的输出");
+            assertNotEquals(computed.getExecutionId(), cached.getExecutionId(), "每次请求都有自己的执行ID");
+
+            ScriptExecutionRequest otherArgs = new ScriptExecutionRequest(script, "js", "price", null, new Object[]{22});
+            otherArgs.setCacheable(true);
+            assertFalse(scriptExecutionService.executeScript(otherArgs).isCached(), "参数不同时不应该命中缓存");
+
+            ScriptExecutionRequest notCacheable = new ScriptExecutionRequest(script, "js", "price", null, new Object[]{21});
+            assertFalse(scriptExecutionService.executeScript(notCacheable).isCached(), "未标记为可缓存的请求总是执行");
+        }
+
+        @Test
+        @DisplayName("相同脚本命中 Source 缓存")
+        void testSourceCacheHit() {
+            String script = "function sourceCacheProbe(x) { return x + 1; }";
+            long hitsBefore = ((Number) sourceCache.getStats().get("hits")).longValue();
+
+            for (int i = 0; i < 3; i++) {
+                ScriptExecutionRequest request = createRequest("js", script);
+                request.setEntryFunction("sourceCacheProbe");
+                request.setArgs(new Object[]{i});
+                ScriptExecutionResult result = scriptExecutionService.executeScript(request);
+                assertTrue(result.isSuccess(), "脚本执行应该成功");
+                assertEquals(i + 1, result.getResult(), "计算结果应该正确");
+            }
+
+            long hitsAfter = ((Number) sourceCache.getStats().get("hits")).longValue();
+            assertTrue(hitsAfter - hitsBefore >= 2, "重复的脚本内容应该命中 Source 缓存");
+        }
+
         @Test
         @DisplayName("大量数据处理测试")
         void testLargeDataProcessing() {
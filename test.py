@@ -134,6 +134,9 @@ class ScriptServerTester:
         """测试REST API"""
         self.log("🧪 开始测试REST API...")
         
+        # 注册脚本名称带时间戳，重复运行时不会与已注册的脚本冲突
+        registered_script = f"test-add-{int(time.time())}"
+        
         tests = [
             {
                 "name": "健康检查",
@@ -147,6 +150,72 @@ class ScriptServerTester:
                 "url": "/api/script/languages",
                 "expected_status": 200
             },
+            {
+                "name": "获取语言详细信息",
+                "method": "GET",
+                "url": "/api/script/languages/details",
+                "expected_status": 200
+            },
+            {
+                "name": "运行时统计",
+                "method": "GET",
+                "url": "/api/script/stats",
+                "expected_status": 200
+            },
+            {
+                "name": "正在运行的执行列表",
+                "method": "GET",
+                "url": "/api/script/executions",
+                "expected_status": 200
+            },
+            {
+                "name": "流式执行（NDJSON）",
+                "method": "POST",
+                "url": "/api/script/execute/stream",
+                "data": {
+                    "script": "console.log('streamed'); 1 + 1",
+                    "language": "js"
+                },
+                "expected_status": 200
+            },
+            {
+                "name": "提交异步作业",
+                "method": "POST",
+                "url": "/api/script/jobs",
+                "data": {
+                    "script": "console.log('job'); 6 * 7",
+                    "language": "js"
+                },
+                "expected_status": 202
+            },
+            {
+                "name": "批量调用入口函数",
+                "method": "POST",
+                "url": "/api/script/batch",
+                "data": {
+                    "script": "function add(a, b) { return a + b; }",
+                    "language": "js",
+                    "entryFunction": "add",
+                    "argsList": [[1, 2], [3, 4], [5, 6]]
+                },
+                "expected_status": 200,
+                "check_result": True
+            },
+            {
+                "name": "并行批量调用与归约",
+                "method": "POST",
+                "url": "/api/script/batch",
+                "data": {
+                    "script": "function square(x) { return x * x; }\nfunction sum(xs) { var t = 0; for (var i = 0; i < xs.length; i++) t += xs[i]; return t; }",
+                    "language": "js",
+                    "entryFunction": "square",
+                    "reduceFunction": "sum",
+                    "parallelism": 2,
+                    "argsList": [[1], [2], [3], [4]]
+                },
+                "expected_status": 200,
+                "check_result": True
+            },
             {
                 "name": "获取沙盒权限配置",
                 "method": "GET",
@@ -218,6 +287,19 @@ class ScriptServerTester:
                 "expected_status": 200,
                 "check_result": True
             },
+            {
+                "name": "JSON对象参数测试",
+                "method": "POST",
+                "url": "/api/script/execute",
+                "data": {
+                    "script": "function total(order) { return order.items.reduce((sum, item) => sum + item.qty, 0); }",
+                    "language": "js",
+                    "entryFunction": "total",
+                    "args": [{"customer": {"name": "alice"}, "items": [{"qty": 1}, {"qty": 2}]}]
+                },
+                "expected_status": 200,
+                "check_result": True
+            },
             {
                 "name": "JavaScript setTimeout测试",
                 "method": "POST",
@@ -373,6 +455,49 @@ class ScriptServerTester:
                 },
                 "expected_status": 200,
                 "check_result": True
+            },
+            {
+                "name": "注册脚本测试",
+                "method": "POST",
+                "url": "/api/script/scripts",
+                "data": {
+                    "name": registered_script,
+                    "script": "function add(a, b) { return a + b; }",
+                    "language": "js",
+                    "entryFunction": "add"
+                },
+                "expected_status": 201
+            },
+            {
+                "name": "按 scriptId 执行测试",
+                "method": "POST",
+                "url": "/api/script/execute",
+                "data": {
+                    "scriptId": registered_script,
+                    "args": [2, 3]
+                },
+                "expected_status": 200,
+                "check_result": True
+            },
+            {
+                "name": "可缓存执行测试",
+                "method": "POST",
+                "url": "/api/script/execute",
+                "data": {
+                    "script": "function price(amount) { return amount * 1.1; }",
+                    "language": "js",
+                    "entryFunction": "price",
+                    "args": [100],
+                    "cacheable": True
+                },
+                "expected_status": 200,
+                "check_result": True
+            },
+            {
+                "name": "已注册脚本列表",
+                "method": "GET",
+                "url": "/api/script/scripts",
+                "expected_status": 200
             }
         ]
         